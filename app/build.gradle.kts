@@ -47,10 +47,14 @@ dependencies {
     implementation(libs.play.services.location)
     implementation(libs.firebase.functions)
     implementation(libs.firebase.messaging)
+    implementation(libs.work.runtime)
     testImplementation(libs.junit)
     androidTestImplementation(libs.ext.junit)
     androidTestImplementation(libs.espresso.core)
     implementation("com.github.bumptech.glide:glide:4.16.0")
     annotationProcessor("com.github.bumptech.glide:compiler:4.16.0")
+    implementation("com.github.bumptech.glide:recyclerview-integration:4.16.0") {
+        isTransitive = false
+    }
     implementation("de.hdodenhof:circleimageview:3.1.0")
 }
\ No newline at end of file
@@ -0,0 +1,21 @@
+package com.retroxinteractive.amora;
+
+import android.app.Application;
+
+import com.bumptech.glide.Glide;
+
+/**
+ * Process-wide hooks. Currently only memory pressure: Glide already trims itself, but once
+ * the UI is hidden the card bitmaps can go entirely, since coming back re-decodes them
+ * from the disk cache.
+ */
+public class AmoraApplication extends Application {
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (level >= TRIM_MEMORY_UI_HIDDEN) {
+            Glide.get(this).clearMemory();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.retroxinteractive.amora;
+
+import android.app.ActivityManager;
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.GlideBuilder;
+import com.bumptech.glide.Registry;
+import com.bumptech.glide.annotation.GlideModule;
+import com.bumptech.glide.load.engine.bitmap_recycle.LruBitmapPool;
+import com.bumptech.glide.load.engine.cache.InternalCacheDiskCacheFactory;
+import com.bumptech.glide.load.engine.cache.LruResourceCache;
+import com.bumptech.glide.module.AppGlideModule;
+
+import java.io.InputStream;
+
+/**
+ * App-wide Glide configuration: memory budgets scaled to the device's memory class, a
+ * bounded disk cache, and token-independent cache keys for Storage URLs
+ * ({@link FirebaseStorageUrl}).
+ *
+ * Opaque card photos ask for RGB_565 themselves (see the adapters); it's not a default
+ * so full-screen photos keep their gradients.
+ */
+@GlideModule
+public final class AmoraGlideModule extends AppGlideModule {
+
+    /** Disk cache for decoded thumbnails and originals, in app cache dir. */
+    static final long DISK_CACHE_BYTES = 200L * 1024 * 1024;
+
+    @Override
+    public void applyOptions(@NonNull Context context, @NonNull GlideBuilder builder) {
+        ActivityManager am = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        boolean lowRam = am != null && am.isLowRamDevice();
+        long heapBytes = (am != null ? am.getMemoryClass() : 64) * 1024L * 1024L;
+
+        // Cards are small thumbnails, so an eighth of the heap holds several screens of them
+        builder.setMemoryCache(new LruResourceCache(memoryCacheBytes(heapBytes, lowRam)));
+        builder.setBitmapPool(new LruBitmapPool(bitmapPoolBytes(heapBytes, lowRam)));
+        builder.setDiskCache(new InternalCacheDiskCacheFactory(
+                context, "image_cache", lowRam ? DISK_CACHE_BYTES / 4 : DISK_CACHE_BYTES));
+    }
+
+    @Override
+    public void registerComponents(@NonNull Context context, @NonNull Glide glide,
+                                   @NonNull Registry registry) {
+        registry.prepend(String.class, InputStream.class, new FirebaseStorageUrl.Loader.Factory());
+    }
+
+    @Override
+    public boolean isManifestParsingEnabled() {
+        return false;
+    }
+
+    static long memoryCacheBytes(long heapBytes, boolean lowRam) {
+        return heapBytes / (lowRam ? 16 : 8);
+    }
+
+    static long bitmapPoolBytes(long heapBytes, boolean lowRam) {
+        return heapBytes / (lowRam ? 32 : 10);
+    }
+}
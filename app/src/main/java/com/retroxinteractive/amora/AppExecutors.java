@@ -0,0 +1,61 @@
+package com.retroxinteractive.amora;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared background executors so heavy work (snapshot parsing, scoring, disk) stays off
+ * the UI thread without every screen spinning up its own threads.
+ */
+public final class AppExecutors {
+
+    private static final Executor PROFILES = newPool("amora-profiles", 1);
+    private static final Executor IO = newPool("amora-io",
+            Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors() - 1)));
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+    private static final Executor MAIN = MAIN_HANDLER::post;
+
+    private AppExecutors() { }
+
+    /**
+     * Single background thread for the profile pipeline. Tasks run in submission order,
+     * so state owned by this stage needs no locking.
+     */
+    public static Executor profiles() {
+        return PROFILES;
+    }
+
+    /** Small bounded pool for disk / decode work. */
+    public static Executor io() {
+        return IO;
+    }
+
+    public static Executor mainThread() {
+        return MAIN;
+    }
+
+    private static Executor newPool(@NonNull String name, int threads) {
+        AtomicInteger count = new AtomicInteger();
+        ThreadFactory factory = r -> {
+            Thread t = new Thread(r, name + "-" + count.incrementAndGet());
+            t.setPriority(Thread.NORM_PRIORITY - 1);
+            return t;
+        };
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                threads, threads,
+                30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                factory);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
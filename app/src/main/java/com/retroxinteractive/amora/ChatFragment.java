@@ -2,6 +2,7 @@ package com.retroxinteractive.amora;
 
 import android.os.Bundle;
 import android.text.TextUtils;
+import android.view.Choreographer;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -24,13 +25,14 @@ import com.google.firebase.database.DataSnapshot;
 import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
-import com.google.firebase.database.ServerValue;
+import com.google.firebase.database.Query;
 import com.google.firebase.database.ValueEventListener;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 
 import de.hdodenhof.circleimageview.CircleImageView;
 
@@ -40,6 +42,11 @@ public class ChatFragment extends Fragment {
     private static final String ARG_RECEIVER_NAME = "receiverName";
     private static final String ARG_RECEIVER_PHOTO = "receiverPhotoUrl";
 
+    /** Messages per page: the live window on open, and each older page on scroll-up. */
+    static final int PAGE_SIZE = 30;
+    /** Start fetching the previous page this many messages before the top. */
+    private static final int LOAD_OLDER_THRESHOLD = 5;
+
     private ImageView btnBack, btnSend;
     private CircleImageView imgProfile;
     private TextView txtName, txtStatus;
@@ -48,12 +55,25 @@ public class ChatFragment extends Fragment {
 
     private MessageAdapter adapter;
     private List<Message> messageList = new ArrayList<>();
+    private final Set<String> messageIds = new HashSet<>();
+    private LinearLayoutManager layoutManager;
+    private boolean loadingOlder = false;
+    private boolean hasOlder = true;
+    // Bumped when the view goes away, so late store / network callbacks are dropped
+    private int viewGeneration = 0;
+
+    // Messages waiting for the next frame (see queueInsert)
+    private final List<Message> pendingInserts = new ArrayList<>();
+    private final Choreographer.FrameCallback flushInserts = frameTimeNanos -> flushPendingInserts();
+    private boolean flushScheduled = false;
+    private boolean initialSyncDone = false;
+    private boolean pendingHasInitialSync = false;
+    private MessageStore messageStore;
 
     private FirebaseUser currentUser;
 
     private DatabaseReference chatsRoot;
     private DatabaseReference userChatsRoot;
-    private DatabaseReference usersRoot;
     private DatabaseReference likesRoot;
 
     private String receiverId;
@@ -61,6 +81,7 @@ public class ChatFragment extends Fragment {
     private String receiverPhotoUrl;
 
     private String roomId;
+    private Query messagesQuery;
     private ChildEventListener messagesListener;
 
     private TextView tvMatched;
@@ -94,8 +115,8 @@ public class ChatFragment extends Fragment {
 
         userChatsRoot = FirebaseDatabase.getInstance().getReference("userChats");
         chatsRoot = FirebaseDatabase.getInstance().getReference("chats");
-        usersRoot = FirebaseDatabase.getInstance().getReference("users");
         likesRoot = FirebaseDatabase.getInstance().getReference("likes");
+        messageStore = MessageStore.getInstance(requireContext());
 
         if (currentUser != null && receiverId != null) {
             roomId = buildRoomId(currentUser.getUid(), receiverId);
@@ -227,11 +248,21 @@ public class ChatFragment extends Fragment {
     }
 
     private void setupRecycler() {
-        LinearLayoutManager lm = new LinearLayoutManager(requireContext());
-        lm.setStackFromEnd(true);
-        recyclerView.setLayoutManager(lm);
+        layoutManager = new LinearLayoutManager(requireContext());
+        layoutManager.setStackFromEnd(true);
+        recyclerView.setLayoutManager(layoutManager);
         adapter = new MessageAdapter(messageList);
         recyclerView.setAdapter(adapter);
+
+        // Pull the previous page in before the user actually reaches the top
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView rv, int dx, int dy) {
+                if (dy < 0 && layoutManager.findFirstVisibleItemPosition() <= LOAD_OLDER_THRESHOLD) {
+                    loadOlderMessages();
+                }
+            }
+        });
     }
 
     private void setupBackButton() {
@@ -250,123 +281,294 @@ public class ChatFragment extends Fragment {
         });
     }
 
+    /**
+     * Draws the room from {@link MessageStore} first, then subscribes only to what is newer
+     * than the newest stored message. With nothing stored it listens to the newest
+     * {@link #PAGE_SIZE} messages, so opening a room costs the same however long its
+     * history is; older pages come from {@link #loadOlderMessages()}.
+     * Needs {@code ".indexOn": ["timestamp"]} on /chats/$roomId.
+     */
     private void observeMessages() {
-        if (roomId == null) return;
+        if (roomId == null || currentUser == null) return;
 
         messageList.clear();
+        messageIds.clear();
+        hasOlder = true;
+        loadingOlder = false;
+        initialSyncDone = false;
         if (adapter != null) {
             adapter.notifyDataSetChanged();
         }
 
-        DatabaseReference chatRef = chatsRoot.child(roomId);
-        messagesListener = chatRef.orderByChild("timestamp")
-                .addChildEventListener(new ChildEventListener() {
-                    @Override
-                    public void onChildAdded(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
-                        Message m = snapshot.getValue(Message.class);
-                        if (m != null) {
-                            messageList.add(m);
-                            adapter.notifyItemInserted(messageList.size() - 1);
-                            scrollToBottom();
-                        }
-                    }
+        int generation = ++viewGeneration;
+        String myId = currentUser.getUid();
+        String room = roomId;
+        AppExecutors.io().execute(() -> {
+            SyncMark mark = messageStore.loadSyncMark(myId, room);
+            List<Message> cached = mark != null
+                    ? messageStore.loadLatest(myId, room, mark, PAGE_SIZE)
+                    : new ArrayList<>();
+            List<ChatOutbox.Entry> unsent = messageStore.loadOutbox(myId, room);
+            AppExecutors.mainThread().execute(() -> {
+                if (generation != viewGeneration) return; // view gone or reloaded
+
+                for (Message m : cached) {
+                    if (messageIds.add(m.getId())) messageList.add(m);
+                }
+                // Still waiting in the outbox: shown as pending below the stored ones
+                for (ChatOutbox.Entry e : unsent) {
+                    if (messageIds.add(e.message.getId())) messageList.add(e.message);
+                }
+                if (!messageList.isEmpty()) {
+                    adapter.notifyItemRangeInserted(0, messageList.size());
+                    recyclerView.scrollToPosition(messageList.size() - 1);
+                }
+                subscribeToNewMessages(mark);
+            });
+        });
+    }
 
-                    @Override
-                    public void onChildChanged(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
-                    }
+    /**
+     * Live query from the room's {@link SyncMark}, not from the newest stored row: the
+     * outbox may have stored a message of ours that is newer than peer messages we never
+     * fetched.
+     */
+    private void subscribeToNewMessages(@Nullable SyncMark mark) {
+        Query byTime = chatsRoot.child(roomId).orderByChild("timestamp");
+        messagesQuery = mark != null
+                ? byTime.startAfter(mark.timestamp, mark.id)
+                : byTime.limitToLast(PAGE_SIZE);
+        messagesListener = messagesQuery.addChildEventListener(new ChildEventListener() {
+            @Override
+            public void onChildAdded(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+                Message m = snapshot.getValue(Message.class);
+                if (m == null) return;
+                if (messageIds.add(snapshot.getKey())) {
+                    m.setId(snapshot.getKey());
+                    queueInsert(m);
+                } else if (!ChatOutbox.isInFlight(snapshot.getKey())) {
+                    // One of ours from the outbox that an earlier attempt already delivered;
+                    // stored here too, as the outbox skips rooms that had no sync mark yet
+                    m.setId(snapshot.getKey());
+                    markSent(m.getId(), m.getTimestamp());
+                    storeMessages(Collections.singletonList(m));
+                }
+            }
 
-                    @Override
-                    public void onChildRemoved(@NonNull DataSnapshot snapshot) {
-                    }
+            @Override
+            public void onChildChanged(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+            }
+
+            @Override
+            public void onChildRemoved(@NonNull DataSnapshot snapshot) {
+                // The limitToLast window sliding past an older message; it stays on screen
+            }
+
+            @Override
+            public void onChildMoved(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+            }
+        });
+
+        // Same query, so this is answered from the data just synced, right after the
+        // initial onChildAdded burst: everything added after it is live
+        int generation = viewGeneration;
+        messagesQuery.addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                if (generation != viewGeneration) return;
+                initialSyncDone = true;
+                if (!snapshot.hasChildren()) {
+                    // Empty room: synced through nothing, so the outbox may store our
+                    // first messages here
+                    String myId = currentUser.getUid();
+                    String room = roomId;
+                    AppExecutors.io().execute(() -> messageStore.ensureSyncMark(myId, room));
+                }
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+            }
+        });
+    }
+
+    /**
+     * Buffers a new message until the next frame, so a burst (the initial sync, or many
+     * messages arriving at once) becomes one range insert and one store write.
+     */
+    private void queueInsert(@NonNull Message m) {
+        pendingInserts.add(m);
+        if (!initialSyncDone) pendingHasInitialSync = true;
+        if (!flushScheduled) {
+            flushScheduled = true;
+            Choreographer.getInstance().postFrameCallback(flushInserts);
+        }
+    }
+
+    private void flushPendingInserts() {
+        flushScheduled = false;
+        if (pendingInserts.isEmpty() || adapter == null || currentUser == null) return;
+
+        List<Message> batch = new ArrayList<>(pendingInserts);
+        boolean jump = pendingHasInitialSync;
+        pendingInserts.clear();
+        pendingHasInitialSync = false;
+
+        int start = messageList.size();
+        messageList.addAll(batch);
+        adapter.notifyItemRangeInserted(start, batch.size());
+        if (jump) {
+            // Catching up: land on the newest message without animating through the rest
+            recyclerView.scrollToPosition(messageList.size() - 1);
+        } else {
+            scrollToBottom();
+        }
+        // Contiguous from the sync mark on, so it moves the mark
+        String myId = currentUser.getUid();
+        String room = roomId;
+        AppExecutors.io().execute(() -> messageStore.putSynced(myId, room, batch));
+    }
+
+    private void storeMessages(@NonNull List<Message> messages) {
+        if (currentUser == null || roomId == null) return;
+        String myId = currentUser.getUid();
+        String room = roomId;
+        AppExecutors.io().execute(() -> messageStore.put(myId, room, messages));
+    }
 
+    /**
+     * Prepends the page just before the oldest message shown, keeping the message the user
+     * is looking at in the same place on screen. Stored messages are used first; the
+     * network is only asked once the store runs out.
+     */
+    private void loadOlderMessages() {
+        if (loadingOlder || !hasOlder || roomId == null || currentUser == null
+                || messageList.isEmpty()) return;
+        loadingOlder = true;
+
+        int generation = viewGeneration;
+        Message oldest = messageList.get(0);
+        String myId = currentUser.getUid();
+        String room = roomId;
+        AppExecutors.io().execute(() -> {
+            List<Message> stored = messageStore.loadBefore(
+                    myId, room, oldest.getTimestamp(), oldest.getId(), PAGE_SIZE);
+            AppExecutors.mainThread().execute(() -> {
+                if (generation != viewGeneration) return;
+
+                prependPage(stored);
+                if (stored.size() >= PAGE_SIZE) {
+                    loadingOlder = false;
+                } else {
+                    fetchOlderMessages(generation);
+                }
+            });
+        });
+    }
+
+    private void fetchOlderMessages(int generation) {
+        Message oldest = messageList.get(0);
+        chatsRoot.child(roomId)
+                .orderByChild("timestamp")
+                .endBefore(oldest.getTimestamp(), oldest.getId())
+                .limitToLast(PAGE_SIZE)
+                .addListenerForSingleValueEvent(new ValueEventListener() {
                     @Override
-                    public void onChildMoved(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+                    public void onDataChange(@NonNull DataSnapshot snapshot) {
+                        if (generation != viewGeneration) return;
+                        loadingOlder = false;
+                        hasOlder = snapshot.getChildrenCount() >= PAGE_SIZE;
+
+                        List<Message> page = new ArrayList<>();
+                        for (DataSnapshot child : snapshot.getChildren()) {
+                            Message m = child.getValue(Message.class);
+                            if (m != null) {
+                                m.setId(child.getKey());
+                                page.add(m);
+                            }
+                        }
+                        storeMessages(page);
+                        prependPage(page);
                     }
 
                     @Override
                     public void onCancelled(@NonNull DatabaseError error) {
+                        if (generation == viewGeneration) loadingOlder = false;
                     }
                 });
     }
 
+    /** Inserts {@code page} (oldest first) above the current list without moving the view. */
+    private void prependPage(@NonNull List<Message> page) {
+        List<Message> fresh = new ArrayList<>();
+        for (Message m : page) {
+            if (messageIds.add(m.getId())) fresh.add(m);
+        }
+        if (fresh.isEmpty()) return;
+
+        // Remember where the first visible message sits, then put it back there
+        int first = layoutManager.findFirstVisibleItemPosition();
+        View firstView = layoutManager.findViewByPosition(first);
+        int offset = firstView != null ? firstView.getTop() : 0;
+
+        messageList.addAll(0, fresh);
+        adapter.notifyItemRangeInserted(0, fresh.size());
+        if (first != RecyclerView.NO_POSITION) {
+            layoutManager.scrollToPositionWithOffset(first + fresh.size(), offset);
+        }
+    }
+
+    /**
+     * Shows the message straight away as pending and hands it to {@link ChatOutbox}, which
+     * persists it and keeps retrying until Firebase has it.
+     */
     private void sendMessage(String text) {
-        if (currentUser == null || roomId == null) return;
+        if (currentUser == null || roomId == null || receiverId == null) return;
 
-        DatabaseReference chatRef = chatsRoot.child(roomId);
-        String id = chatRef.push().getKey();
+        // Generated once here; every retry writes this same key
+        String id = chatsRoot.child(roomId).push().getKey();
         if (id == null) return;
 
-        long timestamp = System.currentTimeMillis();
-
         Message message = new Message(
                 id,
                 currentUser.getUid(),
                 receiverId,
                 text,
-                timestamp
+                System.currentTimeMillis()
         );
-
-        chatRef.child(id).setValue(message)
-                .addOnSuccessListener(unused -> {
-                    edtMessage.setText("");
-                    scrollToBottom();
-                    updateThreadsOnSend(text, timestamp);
-                })
-                .addOnFailureListener(e ->
-                        Toast.makeText(requireContext(), "Failed to send", Toast.LENGTH_SHORT).show());
+        message.setPending(true);
+
+        edtMessage.setText("");
+        messageIds.add(id);
+        messageList.add(message);
+        adapter.notifyItemInserted(messageList.size() - 1);
+        scrollToBottom();
+
+        int generation = viewGeneration;
+        ChatOutbox.send(requireContext(), currentUser.getUid(),
+                new ChatOutbox.Entry(roomId, message, receiverName, receiverPhotoUrl),
+                (messageId, serverTimestamp) -> {
+                    if (generation == viewGeneration) markSent(messageId, serverTimestamp);
+                });
     }
 
-    private void updateThreadsOnSend(String lastMessage, long timestamp) {
-        if (currentUser == null || receiverId == null || roomId == null) return;
-
-        String myId = currentUser.getUid();
-
-        usersRoot.child(myId).addListenerForSingleValueEvent(new ValueEventListener() {
-            @Override
-            public void onDataChange(@NonNull DataSnapshot snapshot) {
-                UserProfile me = snapshot.getValue(UserProfile.class);
-                if (me == null) return;
-
-                String myName = snapshot.child("name").getValue(String.class);
-                String myPhoto = snapshot.child("profileImageUrl").getValue(String.class);
-
-                if (myName == null) myName = "User";
-                if (myPhoto == null) myPhoto = "";
-
-                // 1) Sender side thread (me)
-                ChatThread senderThread = new ChatThread(
-                        roomId,
-                        receiverId,
-                        receiverName,
-                        receiverPhotoUrl,
-                        lastMessage,
-                        timestamp,
-                        0
-                );
-
-                userChatsRoot.child(myId)
-                        .child(roomId)
-                        .setValue(senderThread);
-
-                // 2) Receiver side thread (other user)
-                Map<String, Object> update = new HashMap<>();
-                update.put("roomId", roomId);
-                update.put("otherUserId", myId);
-                update.put("otherUserName", myName);
-                update.put("otherUserPhotoUrl", myPhoto);
-                update.put("lastMessage", lastMessage);
-                update.put("lastTimestamp", timestamp);
-                update.put("unreadCount", ServerValue.increment(1));
-
-                userChatsRoot.child(receiverId)
-                        .child(roomId)
-                        .updateChildren(update);
-            }
-
-            @Override
-            public void onCancelled(@NonNull DatabaseError error) {
+    /** Takes the server's timestamp, which catch-up and paging order by. */
+    private void markSent(@NonNull String messageId, long serverTimestamp) {
+        for (int i = messageList.size() - 1; i >= 0; i--) {
+            Message m = messageList.get(i);
+            if (messageId.equals(m.getId())) {
+                m.setTimestamp(serverTimestamp);
+                if (m.isPending()) {
+                    m.setPending(false);
+                    adapter.notifyItemChanged(i);
+                }
+                return;
             }
-        });
+        }
     }
 
     private void markThreadAsRead() {
@@ -389,8 +591,13 @@ public class ChatFragment extends Fragment {
     @Override
     public void onDestroyView() {
         super.onDestroyView();
-        if (messagesListener != null && roomId != null) {
-            chatsRoot.child(roomId).removeEventListener(messagesListener);
+        viewGeneration++;
+        Choreographer.getInstance().removeFrameCallback(flushInserts);
+        flushScheduled = false;
+        pendingInserts.clear();
+        pendingHasInitialSync = false;
+        if (messagesListener != null && messagesQuery != null) {
+            messagesQuery.removeEventListener(messagesListener);
             messagesListener = null;
         }
     }
@@ -0,0 +1,227 @@
+package com.retroxinteractive.amora;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.MutableData;
+import com.google.firebase.database.ServerValue;
+import com.google.firebase.database.Transaction;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sends chat messages optimistically. A message is persisted in {@link MessageStore}'s
+ * outbox before anything goes over the network, delivered right away, and otherwise
+ * retried by {@link ChatOutboxWorker} with backoff, across restarts.
+ *
+ * The push key is generated on the client before the first attempt and every retry
+ * writes the same chats/{roomId}/{key} path, so a retry can never create a second copy.
+ * The message goes out in one multi-path update with the unread bump, and a retry whose
+ * message is already there skips that update, so the receiver's count moves once.
+ *
+ * The stored timestamp is the server's time of the write, not the device's: chat order and
+ * the catch-up in ChatFragment key on it, so a message delivered late (or from a device
+ * with a wrong clock) still sorts after everything the receiver already has.
+ */
+public final class ChatOutbox {
+
+    /** What a retry needs to redo the send: the message plus the sender-side thread info. */
+    public static final class Entry {
+        @NonNull final String roomId;
+        @NonNull final Message message;
+        @Nullable final String receiverName;
+        @Nullable final String receiverPhotoUrl;
+
+        public Entry(@NonNull String roomId, @NonNull Message message,
+                     @Nullable String receiverName, @Nullable String receiverPhotoUrl) {
+            this.roomId = roomId;
+            this.message = message;
+            this.receiverName = receiverName;
+            this.receiverPhotoUrl = receiverPhotoUrl;
+        }
+    }
+
+    public interface Callback {
+        /** Main thread, once Firebase has confirmed the write; with its server timestamp. */
+        void onDelivered(@NonNull String messageId, long serverTimestamp);
+    }
+
+    // Keys with a delivery running in this process; the worker leaves those alone
+    private static final Set<String> IN_FLIGHT = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    private ChatOutbox() { }
+
+    /**
+     * Persists {@code entry}, schedules the retry worker and attempts delivery. The caller
+     * shows the message as pending straight away.
+     */
+    public static void send(@NonNull Context context, @NonNull String myId,
+                            @NonNull Entry entry, @NonNull Callback callback) {
+        Context app = context.getApplicationContext();
+        MessageStore store = MessageStore.getInstance(app);
+        // Claimed before the worker is scheduled, so it can't deliver this entry alongside us
+        claim(entry.message.getId());
+        AppExecutors.io().execute(() -> {
+            // Written before the first attempt, so a crash mid-send still leaves it queued
+            store.putOutbox(myId, entry);
+            ChatOutboxWorker.enqueue(app);
+            AppExecutors.mainThread().execute(() ->
+                    deliver(app, myId, entry).addOnSuccessListener(serverTimestamp ->
+                            callback.onDelivered(entry.message.getId(), serverTimestamp)));
+        });
+    }
+
+    static boolean isInFlight(@NonNull String messageId) {
+        return IN_FLIGHT.contains(messageId);
+    }
+
+    /** Reserves {@code messageId} for one delivery; false if one is already running. */
+    static boolean claim(@NonNull String messageId) {
+        return IN_FLIGHT.add(messageId);
+    }
+
+    /**
+     * Delivers a {@link #claim claimed} entry and releases the claim when done; completes with
+     * the message's server timestamp. Moves it out of the outbox once the server has
+     * acknowledged it (even if the caller stopped waiting).
+     *
+     * Fails, to be retried, rather than writing placeholders if the sender's own profile
+     * can't be read (e.g. offline with nothing cached).
+     */
+    @NonNull
+    static Task<Long> deliver(@NonNull Context context, @NonNull String myId, @NonNull Entry entry) {
+        String id = entry.message.getId();
+        MessageStore store = MessageStore.getInstance(context);
+        DatabaseReference root = FirebaseDatabase.getInstance().getReference();
+        DatabaseReference messageRef = root.child("chats").child(entry.roomId).child(id);
+        return messageRef.get()
+                .continueWithTask(existing -> {
+                    if (existing.getResult().exists()) {
+                        // An earlier attempt landed but its ack was lost; the unread bump
+                        // went out with it
+                        return Tasks.forResult(existing.getResult());
+                    }
+                    return root.child("users").child(myId).get().continueWithTask(meTask -> {
+                        DataSnapshot me = meTask.getResult();
+                        if (!me.exists()) {
+                            return Tasks.<DataSnapshot>forException(
+                                    new IllegalStateException("Own profile unavailable"));
+                        }
+                        // Read back for the timestamp the server filled in
+                        return root.updateChildren(buildUpdate(myId, entry, me))
+                                .continueWithTask(written -> {
+                                    written.getResult(); // rethrows a failed write
+                                    return messageRef.get();
+                                });
+                    });
+                })
+                .continueWithTask(stored -> {
+                    Long serverTs = stored.getResult().child("timestamp").getValue(Long.class);
+                    long timestamp = serverTs != null ? serverTs : entry.message.getTimestamp();
+                    String text = entry.message.getText();
+                    String receiverId = entry.message.getReceiverId();
+                    return Tasks.whenAll(
+                            publishLastMessage(root.child("userChats").child(myId)
+                                    .child(entry.roomId), text, timestamp),
+                            publishLastMessage(root.child("userChats").child(receiverId)
+                                    .child(entry.roomId), text, timestamp))
+                            .continueWith(published -> {
+                                published.getResult();
+                                return timestamp;
+                            });
+                })
+                .addOnSuccessListener(timestamp ->
+                        AppExecutors.io().execute(() -> store.markDelivered(myId, entry, timestamp)))
+                .addOnCompleteListener(task -> IN_FLIGHT.remove(id));
+    }
+
+    /** The message plus both threads' identity fields and the receiver's unread bump. */
+    @NonNull
+    private static Map<String, Object> buildUpdate(@NonNull String myId, @NonNull Entry entry,
+                                                   @NonNull DataSnapshot me) {
+        Message m = entry.message;
+        String receiverId = m.getReceiverId();
+        Map<String, Object> update = new HashMap<>();
+
+        // Same fields as Message, with the server's clock instead of the device's
+        Map<String, Object> message = new HashMap<>();
+        message.put("id", m.getId());
+        message.put("senderId", m.getSenderId());
+        message.put("receiverId", receiverId);
+        message.put("text", m.getText());
+        message.put("timestamp", ServerValue.TIMESTAMP);
+        update.put("chats/" + entry.roomId + "/" + m.getId(), message);
+
+        // 1) Sender side thread (me)
+        String mine = "userChats/" + myId + "/" + entry.roomId + "/";
+        update.put(mine + "roomId", entry.roomId);
+        update.put(mine + "otherUserId", receiverId);
+        update.put(mine + "otherUserName", entry.receiverName);
+        update.put(mine + "otherUserPhotoUrl", entry.receiverPhotoUrl);
+        update.put(mine + "unreadCount", 0);
+        UserProfile receiver = ProfileRepository.getInstance().getProfile(receiverId);
+        if (receiver != null) {
+            update.put(mine + "otherUserPhotoThumbs", receiver.getPhotoThumbs());
+        }
+
+        // 2) Receiver side thread (other user)
+        String myName = me.child("name").getValue(String.class);
+        String myPhoto = me.child("profileImageUrl").getValue(String.class);
+
+        String theirs = "userChats/" + receiverId + "/" + entry.roomId + "/";
+        update.put(theirs + "roomId", entry.roomId);
+        update.put(theirs + "otherUserId", myId);
+        update.put(theirs + "otherUserName", myName != null ? myName : "User");
+        update.put(theirs + "otherUserPhotoUrl", myPhoto != null ? myPhoto : "");
+        update.put(theirs + "otherUserPhotoThumbs", me.child("profileImageThumbs").getValue());
+        update.put(theirs + "unreadCount", ServerValue.increment(1));
+        return update;
+    }
+
+    /**
+     * Sets a thread's lastMessage / lastTimestamp unless it already shows a newer message,
+     * so a late retry never rolls a chat list entry back.
+     */
+    @NonNull
+    private static Task<Void> publishLastMessage(@NonNull DatabaseReference thread,
+                                                 @Nullable String text, long timestamp) {
+        TaskCompletionSource<Void> result = new TaskCompletionSource<>();
+        thread.runTransaction(new Transaction.Handler() {
+            @NonNull
+            @Override
+            public Transaction.Result doTransaction(@NonNull MutableData current) {
+                Long last = current.child("lastTimestamp").getValue(Long.class);
+                if (last != null && last > timestamp) {
+                    return Transaction.abort();
+                }
+                current.child("lastMessage").setValue(text);
+                current.child("lastTimestamp").setValue(timestamp);
+                return Transaction.success(current);
+            }
+
+            @Override
+            public void onComplete(@Nullable DatabaseError error, boolean committed,
+                                   @Nullable DataSnapshot snapshot) {
+                if (error != null) {
+                    result.setException(error.toException());
+                } else {
+                    result.setResult(null); // aborted = a newer message is already shown
+                }
+            }
+        });
+        return result.getTask();
+    }
+}
@@ -0,0 +1,85 @@
+package com.retroxinteractive.amora;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drains the {@link ChatOutbox} of the signed-in user: re-delivers every message that has
+ * no confirmed write yet, oldest first, and retries with exponential backoff until the
+ * outbox is empty. Being WorkManager work it also runs after the app was killed.
+ */
+public final class ChatOutboxWorker extends Worker {
+
+    private static final String TAG = "ChatOutboxWorker";
+    private static final String WORK_NAME = "chat_outbox";
+
+    /** How long a single delivery may take before this run gives up and retries. */
+    private static final long DELIVERY_TIMEOUT_S = 30;
+
+    public ChatOutboxWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    /** Schedules a drain; a pending one already covers newly queued messages. */
+    static void enqueue(@NonNull Context context) {
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(ChatOutboxWorker.class)
+                .setConstraints(new Constraints.Builder()
+                        .setRequiredNetworkType(NetworkType.CONNECTED)
+                        .build())
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, 10, TimeUnit.SECONDS)
+                .build();
+        WorkManager.getInstance(context).enqueueUniqueWork(WORK_NAME, ExistingWorkPolicy.KEEP, request);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        FirebaseUser me = FirebaseAuth.getInstance().getCurrentUser();
+        if (me == null) return Result.success(); // signed out; the outbox was cleared
+
+        MessageStore store = MessageStore.getInstance(getApplicationContext());
+        List<ChatOutbox.Entry> entries = store.loadOutbox(me.getUid(), null);
+
+        boolean remaining = false;
+        for (ChatOutbox.Entry entry : entries) {
+            if (isStopped()) return Result.retry();
+            if (!ChatOutbox.claim(entry.message.getId())) {
+                // ChatFragment is sending it right now; check again next run
+                remaining = true;
+                continue;
+            }
+            try {
+                long timestamp = Tasks.await(
+                        ChatOutbox.deliver(getApplicationContext(), me.getUid(), entry),
+                        DELIVERY_TIMEOUT_S, TimeUnit.SECONDS);
+                // Also queued by deliver; idempotent
+                store.markDelivered(me.getUid(), entry, timestamp);
+            } catch (Exception e) {
+                Log.w(TAG, "Delivery failed: " + entry.message.getId(), e);
+                remaining = true;
+            }
+        }
+        // Anything queued while this run was going (KEEP dropped its enqueue) needs another run
+        if (!remaining && !store.loadOutbox(me.getUid(), null).isEmpty()) {
+            remaining = true;
+        }
+        return remaining ? Result.retry() : Result.success();
+    }
+}
@@ -1,11 +1,14 @@
 package com.retroxinteractive.amora;
 
+import java.util.Map;
+
 public class ChatThread {
 
     public String roomId;
     public String otherUserId;
     public String otherUserName;
     public String otherUserPhotoUrl;
+    public Map<String, String> otherUserPhotoThumbs; // optional, see ImageVariants
     public String lastMessage;
     public long lastTimestamp;
     public long unreadCount;
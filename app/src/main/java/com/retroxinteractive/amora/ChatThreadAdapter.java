@@ -9,6 +9,7 @@ import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.DecodeFormat;
 
 import java.text.DateFormat;
 import java.util.Date;
@@ -62,8 +63,10 @@ public class ChatThreadAdapter extends RecyclerView.Adapter<ChatThreadAdapter.Ch
 
         if (thread.otherUserPhotoUrl != null && !thread.otherUserPhotoUrl.isEmpty()) {
             Glide.with(holder.itemView.getContext())
-                    .load(thread.otherUserPhotoUrl)
+                    .load(ImageVariants.pick(thread.otherUserPhotoUrl, thread.otherUserPhotoThumbs,
+                            ImageVariants.targetPx(holder.imgAvatar)))
                     .placeholder(R.drawable.ic_profile)
+                    .format(DecodeFormat.PREFER_RGB_565)
                     .into(holder.imgAvatar);
         } else {
             holder.imgAvatar.setImageResource(R.drawable.ic_profile);
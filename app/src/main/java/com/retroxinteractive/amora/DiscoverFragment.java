@@ -1,6 +1,7 @@
 package com.retroxinteractive.amora;
 
 import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
 import android.os.Bundle;
 import android.text.TextUtils;
 import android.util.TypedValue;
@@ -16,26 +17,29 @@ import android.widget.Toast;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
+import androidx.recyclerview.widget.AsyncListDiffer;
 import androidx.recyclerview.widget.GridLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.ListPreloader;
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.load.DecodeFormat;
+import com.bumptech.glide.util.ViewPreloadSizeProvider;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.database.DataSnapshot;
 import com.google.firebase.database.DatabaseError;
-import com.google.firebase.database.DatabaseReference;
-import com.google.firebase.database.FirebaseDatabase;
-import com.google.firebase.database.ValueEventListener;
 
 import java.text.DecimalFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
 
 import android.view.Menu;
+import android.view.SubMenu;
 import android.widget.PopupMenu;
 import androidx.core.content.ContextCompat;
 
@@ -53,10 +57,17 @@ public class DiscoverFragment extends Fragment {
     private final Set<String> selectedFilters = new LinkedHashSet<>();
     private final Set<String> availableFilters = new LinkedHashSet<>();
 
+    // Sort order (menu titles double as the keys)
+    private static final String SORT_BEST_MATCH = "Best match";
+    private static final String SORT_NEAREST = "Nearest";
+    private static final String SORT_NEWEST = "Recently updated";
+    private static final String SORT_VERIFIED = "Verified first";
+    private static final int SORT_GROUP = 1;
+    private String sortMode = SORT_BEST_MATCH;
+
     // Firebase
     private FirebaseUser currentUser;
-    private DatabaseReference usersRef;
-    private ValueEventListener usersListener;
+    private ProfileRepository.Listener profilesListener;
 
     // Adapter (CHANGE name if your adapter is called something else)
     private DiscoverAdapter adapter;
@@ -71,7 +82,6 @@ public class DiscoverFragment extends Fragment {
         View root = inflater.inflate(R.layout.fragment_discover, container, false);
 
         currentUser = FirebaseAuth.getInstance().getCurrentUser();
-        usersRef = FirebaseDatabase.getInstance().getReference("users");
 
         filterBtnTop = root.findViewById(R.id.filter_btn_top);
         filterScroll = root.findViewById(R.id.filter_scroll);
@@ -86,9 +96,20 @@ public class DiscoverFragment extends Fragment {
         );
 
         // RecyclerView setup: 2-column grid
-        rvProfiles.setLayoutManager(new GridLayoutManager(requireContext(), 2));
-        adapter = new DiscoverAdapter(filteredProfiles);
+        GridLayoutManager gridLayoutManager = new GridLayoutManager(requireContext(), 2);
+        rvProfiles.setLayoutManager(gridLayoutManager);
+        adapter = new DiscoverAdapter();
         rvProfiles.setAdapter(adapter);
+        ImagePreloading.attach(rvProfiles, Glide.with(this), adapter, adapter.preloadSizes);
+
+        // Fetch the next page ~3 rows before the end of the grid
+        rvProfiles.addOnScrollListener(new PagingScrollListener(
+                gridLayoutManager, gridLayoutManager.getSpanCount() * 3) {
+            @Override
+            protected void onLoadMore() {
+                ProfileRepository.getInstance().loadNextPage();
+            }
+        });
 
         // Hide filter bar initially
         filterScroll.setVisibility(View.GONE);
@@ -115,9 +136,9 @@ public class DiscoverFragment extends Fragment {
     @Override
     public void onStop() {
         super.onStop();
-        if (usersListener != null) {
-            usersRef.removeEventListener(usersListener);
-            usersListener = null;
+        if (profilesListener != null) {
+            ProfileRepository.getInstance().removeListener(profilesListener);
+            profilesListener = null;
         }
     }
 
@@ -127,105 +148,21 @@ public class DiscoverFragment extends Fragment {
             return;
         }
 
-        final String currentUid = currentUser.getUid();
-
-        usersListener = new ValueEventListener() {
+        profilesListener = new ProfileRepository.Listener() {
             @Override
-            public void onDataChange(@NonNull DataSnapshot snapshot) {
+            public void onProfilesChanged(@NonNull List<UserProfile> profiles) {
                 allProfiles.clear();
-                filteredProfiles.clear();
                 availableFilters.clear();
 
-                // ───── 1) Get current user's location + interests (same idea as HomepageFragment) ─────
-                double myLat = 0.0;
-                double myLng = 0.0;
-                boolean haveMyLocation = false;
-                List<String> myInterests = new ArrayList<>();
-
-                DataSnapshot meSnap = snapshot.child(currentUid);
-                if (meSnap.exists()) {
-                    // Location
-                    Double lat = meSnap.child("latitude").getValue(Double.class);
-                    Double lng = meSnap.child("longitude").getValue(Double.class);
-                    if (lat != null && lng != null) {
-                        myLat = lat;
-                        myLng = lng;
-                        haveMyLocation = true;
-                    }
-
-                    // My interests
-                    DataSnapshot myInterestsSnap = meSnap.child("interests");
-                    for (DataSnapshot iSnap : myInterestsSnap.getChildren()) {
-                        String interest = iSnap.getValue(String.class);
-                        if (interest != null && !interest.trim().isEmpty()) {
-                            myInterests.add(interest.trim());
-                        }
-                    }
-                }
-
-                // ───── 2) Build profiles for everyone else ─────
-                for (DataSnapshot child : snapshot.getChildren()) {
-                    String uid = child.getKey();
-                    if (uid == null || uid.equals(currentUid)) continue;
-
-                    Boolean profileCompleted =
-                            child.child("profileCompleted").getValue(Boolean.class);
-                    if (profileCompleted != null && !profileCompleted) continue;
-
-                    String name = child.child("name").getValue(String.class);
-                    String bio = child.child("bio").getValue(String.class);
-                    String imageUrl = child.child("profileImageUrl").getValue(String.class);
-                    Boolean verified = child.child("verified").getValue(Boolean.class);
-
-                    // Optional age field (if present in DB)
-                    long ageLong = Long.parseLong(Objects.requireNonNull(child.child("age").getValue(String.class)));
-                    int age = (int) ageLong;
-
-                    // Interests list
-                    List<String> interests = new ArrayList<>();
-                    DataSnapshot interestsSnap = child.child("interests");
-                    for (DataSnapshot iSnap : interestsSnap.getChildren()) {
-                        String interest = iSnap.getValue(String.class);
-                        if (interest != null && !interest.trim().isEmpty()) {
-                            interests.add(interest.trim());
-                            availableFilters.add(interest.trim());
-                        }
-                    }
-
-                    // Distance
-                    double distanceKm = -1;
-                    if (haveMyLocation) {
-                        Double lat = child.child("latitude").getValue(Double.class);
-                        Double lng = child.child("longitude").getValue(Double.class);
-                        if (lat != null && lng != null) {
-                            distanceKm = calculateDistanceKm(myLat, myLng, lat, lng);
-                        }
-                    }
-
-                    // Match %
-                    int matchPercent = calculateMatchPercent(myInterests, interests);
-
-                    // Build profile
-                    UserProfile profile = new UserProfile();
-                    profile.uid = uid;
-                    profile.name = name;
-                    profile.age = age;
-                    profile.bio = bio;
-                    profile.profileImageUrl = imageUrl;
-                    profile.verified = (verified != null && verified);
-                    profile.distanceKm = distanceKm;      // -1 means unknown
-                    profile.matchPercent = matchPercent;  // 0–100
-                    profile.interests = interests;
-
-                    allProfiles.add(profile);
-                }
+                allProfiles.addAll(profiles);
+                availableFilters.addAll(ProfileRepository.getInstance().getAvailableInterests());
 
                 // Once we have data → apply filters (or show all)
                 applyFilters();
             }
 
             @Override
-            public void onCancelled(@NonNull DatabaseError error) {
+            public void onProfilesError(@NonNull DatabaseError error) {
                 if (!isAdded()) return;
                 Toast.makeText(
                         requireContext(),
@@ -235,79 +172,22 @@ public class DiscoverFragment extends Fragment {
             }
         };
 
-        usersRef.addValueEventListener(usersListener);
-    }
-
-    /**
-     * Haversine distance in km between 2 lat/lng pairs.
-     */
-    private double calculateDistanceKm(double lat1, double lon1,
-                                       double lat2, double lon2) {
-        double R = 6371.0; // Earth radius in km
-        double dLat = Math.toRadians(lat2 - lat1);
-        double dLon = Math.toRadians(lon2 - lon1);
-        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
-                + Math.cos(Math.toRadians(lat1))
-                * Math.cos(Math.toRadians(lat2))
-                * Math.sin(dLon / 2) * Math.sin(dLon / 2);
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-        return R * c;
-    }
-
-    /**
-     * Returns how many of myInterests are shared with otherInterests, as a %.
-     * Example: my = ["Art","Music","Travel"], other = ["Music","Cooking"]
-     * common = 1 → 1/3 ≈ 33%.
-     */
-    private int calculateMatchPercent(List<String> myInterests, List<String> otherInterests) {
-        if (myInterests == null || myInterests.isEmpty()
-                || otherInterests == null || otherInterests.isEmpty()) {
-            return 0;
-        }
-
-        // count only non-empty items in myInterests
-        int baseCount = 0;
-        for (String s : myInterests) {
-            if (s != null && !s.trim().isEmpty()) {
-                baseCount++;
-            }
-        }
-        if (baseCount == 0) return 0;
-
-        int common = getCommon(myInterests, otherInterests);
-
-        return (int) Math.round(common * 100.0 / baseCount);
-    }
-
-    private int getCommon(List<String> myInterests, List<String> otherInterests) {
-        int common = 0;
-        for (String mine : myInterests) {
-            if (mine == null || mine.trim().isEmpty()) continue;
-            String mineNorm = mine.trim().toLowerCase();
-
-            // see if other user has this interest (case-insensitive)
-            for (String other : otherInterests) {
-                if (other == null || other.trim().isEmpty()) continue;
-                if (mineNorm.equals(other.trim().toLowerCase())) {
-                    common++;
-                    break; // avoid double-counting
-                }
-            }
-        }
-        return common;
+        ProfileRepository.getInstance().addListener(profilesListener);
     }
 
     // ─────────────────────────────────────────────
     // Popup menu for picking filters (interests)
     // ─────────────────────────────────────────────
     private void showFilterMenu() {
-        if (availableFilters.isEmpty()) {
-            Toast.makeText(requireContext(),
-                    "No filters available yet.", Toast.LENGTH_SHORT).show();
-            return;
+        PopupMenu menu = new PopupMenu(requireContext(), filterBtnTop);
+
+        SubMenu sortMenu = menu.getMenu().addSubMenu("Sort by");
+        for (String mode : new String[]{SORT_BEST_MATCH, SORT_NEAREST, SORT_NEWEST, SORT_VERIFIED}) {
+            sortMenu.add(SORT_GROUP, Menu.NONE, Menu.NONE, mode)
+                    .setChecked(mode.equals(sortMode));
         }
+        sortMenu.setGroupCheckable(SORT_GROUP, true, true);
 
-        PopupMenu menu = new PopupMenu(requireContext(), filterBtnTop);
         int id = 0;
         for (String interest : availableFilters) {
             // Avoid adding filters that are already selected
@@ -316,16 +196,14 @@ public class DiscoverFragment extends Fragment {
             }
         }
 
-        // If every available filter is already selected, nothing to show
-        if (menu.getMenu().size() == 0) {
-            Toast.makeText(requireContext(),
-                    "All filters already selected.", Toast.LENGTH_SHORT).show();
-            return;
-        }
-
         menu.setOnMenuItemClickListener(item -> {
+            if (item.hasSubMenu()) return false;
+
             String chosen = Objects.requireNonNull(item.getTitle()).toString();
-            if (!TextUtils.isEmpty(chosen) && !selectedFilters.contains(chosen)) {
+            if (item.getGroupId() == SORT_GROUP) {
+                sortMode = chosen;
+                applyFilters();
+            } else if (!TextUtils.isEmpty(chosen) && !selectedFilters.contains(chosen)) {
                 selectedFilters.add(chosen);
                 refreshFilterChips();
                 applyFilters();
@@ -394,39 +272,25 @@ public class DiscoverFragment extends Fragment {
         if (selectedFilters.isEmpty()) {
             filteredProfiles.addAll(allProfiles);
         } else {
-            for (UserProfile profile : allProfiles) {
-                List<String> interests = profile.interests;
-                if (interests == null) interests = new ArrayList<>();
-
-                if (interestsContainAll(interests, selectedFilters)) {
-                    filteredProfiles.add(profile);
-                }
-            }
+            // Every filter must be present (case-insensitive) → posting-list intersection
+            filteredProfiles.addAll(
+                    ProfileRepository.getInstance().findByInterests(selectedFilters));
         }
 
-        adapter.notifyDataSetChanged();
+        adapter.submitList(currentRanker().topK(filteredProfiles, filteredProfiles.size()));
     }
 
-    private boolean interestsContainAll(List<String> interests, Set<String> filters) {
-        // Every filter must be present in profile's interests
-        for (String f : filters) {
-            if (!interests.contains(f)) return false;
+    private ProfileRanker currentRanker() {
+        switch (sortMode) {
+            case SORT_NEAREST:
+                return ProfileRanker.nearestFirst();
+            case SORT_NEWEST:
+                return ProfileRanker.newestFirst();
+            case SORT_VERIFIED:
+                return ProfileRanker.verifiedFirst();
+            default:
+                return ProfileRanker.forYou();
         }
-        return true;
-    }
-
-    // ───────────────────── MODEL ─────────────────────
-
-    static class UserProfile {
-        String uid;
-        String name;
-        int age;
-        String bio;
-        String profileImageUrl;
-        boolean verified;
-        double distanceKm;   // -1 if unknown
-        int matchPercent;    // 0–100
-        List<String> interests;
     }
 
     /**
@@ -439,7 +303,7 @@ public class DiscoverFragment extends Fragment {
             ((MainActivity) getActivity()).setBottomNavVisible(false);
         }
 
-        ProfileFragment fragment = ProfileFragment.newInstance(profile.uid, null);
+        ProfileFragment fragment = ProfileFragment.newInstance(profile.getUid(), null);
 
         requireActivity().getSupportFragmentManager()
                 .beginTransaction()
@@ -451,13 +315,29 @@ public class DiscoverFragment extends Fragment {
 
     // ───────────────────── ADAPTER ─────────────────────
 
-    private class DiscoverAdapter extends RecyclerView.Adapter<DiscoverAdapter.ProfileViewHolder> {
+    private class DiscoverAdapter extends RecyclerView.Adapter<DiscoverAdapter.ProfileViewHolder>
+            implements ListPreloader.PreloadModelProvider<UserProfile> {
 
-        private final List<UserProfile> items;
+        private final AsyncListDiffer<UserProfile> differ =
+                new AsyncListDiffer<>(this, new ProfileDiffCallback());
+        private final ProfileDiffCallback.StableIds stableIds = new ProfileDiffCallback.StableIds();
         private final DecimalFormat distanceFormat = new DecimalFormat("#.#");
 
-        DiscoverAdapter(List<UserProfile> items) {
-            this.items = items;
+        // Grid cell image size for ImagePreloading; taken from the first inflated card
+        final ViewPreloadSizeProvider<UserProfile> preloadSizes = new ViewPreloadSizeProvider<>();
+        private int imageWidthPx;
+
+        DiscoverAdapter() {
+            setHasStableIds(true);
+        }
+
+        void submitList(List<UserProfile> profiles) {
+            differ.submitList(profiles);
+        }
+
+        @Override
+        public long getItemId(int position) {
+            return stableIds.idFor(differ.getCurrentList().get(position).getUid());
         }
 
         @NonNull
@@ -465,57 +345,100 @@ public class DiscoverFragment extends Fragment {
         public ProfileViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
             View view = LayoutInflater.from(parent.getContext())
                     .inflate(R.layout.item_mini_profile_card, parent, false);
-            return new ProfileViewHolder(view);
+            ProfileViewHolder holder = new ProfileViewHolder(view);
+            preloadSizes.setView(holder.imgTopArea);
+            return holder;
+        }
+
+        @Override
+        public void onBindViewHolder(@NonNull ProfileViewHolder holder, int position,
+                                     @NonNull List<Object> payloads) {
+            if (payloads.contains(ProfileDiffCallback.PAYLOAD_SCORES)) {
+                // Only distance / match changed → keep the image request running
+                bindScores(holder, differ.getCurrentList().get(position));
+                return;
+            }
+            super.onBindViewHolder(holder, position, payloads);
         }
 
         @Override
         public void onBindViewHolder(@NonNull ProfileViewHolder holder, int position) {
-            UserProfile profile = items.get(position);
+            UserProfile profile = differ.getCurrentList().get(position);
 
             // Name + (optional age)
-            if (profile.age > 0) {
-                String str = profile.name + ", " + profile.age;
+            if (!TextUtils.isEmpty(profile.getAge())) {
+                String str = profile.getName() + ", " + profile.getAge();
                 holder.tvName.setText(str);
             } else {
-                holder.tvName.setText(profile.name);
+                holder.tvName.setText(profile.getName());
             }
 
             // Verified badge visibility
-            holder.imgVerified.setVisibility(profile.verified ? View.VISIBLE : View.GONE);
+            holder.imgVerified.setVisibility(profile.getVerified() ? View.VISIBLE : View.GONE);
+
+            // Distance + match %
+            bindScores(holder, profile);
+
+            // Load top image
+            if (!TextUtils.isEmpty(profile.getPhotoUrl())) {
+                imageWidthPx = ImageVariants.targetPx(holder.imgTopArea);
+                imageRequest(profile).into(holder.imgTopArea);
+            } else {
+                holder.imgTopArea.setImageResource(0); // or a placeholder
+            }
+
+            // Click: open this user's full profile
+            holder.itemView.setOnClickListener(v -> openUserProfile(profile));
+        }
 
+        /** Same request for bind and preload, so the preloaded bitmap is what binds. */
+        @NonNull
+        private RequestBuilder<Drawable> imageRequest(@NonNull UserProfile profile) {
+            return Glide.with(DiscoverFragment.this)
+                    .load(ImageVariants.pick(profile, imageWidthPx))
+                    .format(DecodeFormat.PREFER_RGB_565) // opaque photo, half the bytes
+                    .centerCrop();
+        }
+
+        @NonNull
+        @Override
+        public List<UserProfile> getPreloadItems(int position) {
+            List<UserProfile> current = differ.getCurrentList();
+            if (position >= current.size() || imageWidthPx == 0) return Collections.emptyList();
+
+            UserProfile profile = current.get(position);
+            return !TextUtils.isEmpty(profile.getPhotoUrl())
+                    ? Collections.singletonList(profile)
+                    : Collections.emptyList();
+        }
+
+        @Override
+        public RequestBuilder<?> getPreloadRequestBuilder(@NonNull UserProfile profile) {
+            return imageRequest(profile);
+        }
+
+        private void bindScores(@NonNull ProfileViewHolder holder, @NonNull UserProfile profile) {
             // Distance
-            if (profile.distanceKm >= 0) {
-                String text = distanceFormat.format(profile.distanceKm) + " km away";
+            if (profile.getDistanceKm() != null) {
+                String text = distanceFormat.format(profile.getDistanceKm()) + " km away";
                 holder.tvDistance.setText(text);
             } else {
                 holder.tvDistance.setText("—");
             }
 
             // Match %
-            if (profile.matchPercent > 0) {
-                String str = profile.matchPercent + "%";
+            Integer matchPercent = profile.getMatchPercent();
+            if (matchPercent != null && matchPercent > 0) {
+                String str = matchPercent + "%";
                 holder.tvMatchPercent.setText(str);
             } else {
                 holder.tvMatchPercent.setText("0%");
             }
-
-            // Load top image
-            if (!TextUtils.isEmpty(profile.profileImageUrl)) {
-                Glide.with(holder.itemView.getContext())
-                        .load(profile.profileImageUrl)
-                        .centerCrop()
-                        .into(holder.imgTopArea);
-            } else {
-                holder.imgTopArea.setImageResource(0); // or a placeholder
-            }
-
-            // Click: open this user's full profile
-            holder.itemView.setOnClickListener(v -> openUserProfile(profile));
         }
 
         @Override
         public int getItemCount() {
-            return items.size();
+            return differ.getCurrentList().size();
         }
 
         class ProfileViewHolder extends RecyclerView.ViewHolder {
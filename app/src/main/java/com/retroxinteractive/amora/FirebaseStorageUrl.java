@@ -0,0 +1,91 @@
+package com.retroxinteractive.amora;
+
+import androidx.annotation.NonNull;
+
+import com.bumptech.glide.load.Options;
+import com.bumptech.glide.load.model.GlideUrl;
+import com.bumptech.glide.load.model.ModelLoader;
+import com.bumptech.glide.load.model.ModelLoaderFactory;
+import com.bumptech.glide.load.model.MultiModelLoaderFactory;
+
+import java.io.InputStream;
+
+/**
+ * Firebase Storage download URL whose Glide cache key leaves out the {@code token}
+ * parameter. Tokens change whenever they are revoked or the thumbnail function rewrites
+ * a variant, while the bytes behind the path stay the same, so keying on the full URL
+ * would download and cache the same image again.
+ *
+ * Object paths are never reused for new content (uploads get unique file names), so the
+ * path alone identifies the image.
+ */
+final class FirebaseStorageUrl extends GlideUrl {
+
+    private static final String HOST_PREFIX = "https://firebasestorage.googleapis.com/";
+
+    private final String cacheKey;
+
+    private FirebaseStorageUrl(@NonNull String url) {
+        super(url);
+        this.cacheKey = stripToken(url);
+    }
+
+    @Override
+    public String getCacheKey() {
+        return cacheKey;
+    }
+
+    static boolean handles(@NonNull String url) {
+        return url.startsWith(HOST_PREFIX);
+    }
+
+    /** {@code url} without its {@code token=} query parameter; other parameters keep their order. */
+    @NonNull
+    static String stripToken(@NonNull String url) {
+        int query = url.indexOf('?');
+        if (query < 0) return url;
+
+        int fragment = url.indexOf('#', query);
+        String tail = fragment < 0 ? "" : url.substring(fragment);
+        String params = url.substring(query + 1, fragment < 0 ? url.length() : fragment);
+
+        StringBuilder kept = new StringBuilder();
+        for (String param : params.split("&")) {
+            if (param.isEmpty() || param.startsWith("token=") || param.equals("token")) continue;
+            kept.append(kept.length() == 0 ? '?' : '&').append(param);
+        }
+        return url.substring(0, query) + kept + tail;
+    }
+
+    /** Routes String models for Storage URLs through {@link FirebaseStorageUrl}. */
+    static final class Loader implements ModelLoader<String, InputStream> {
+
+        private final ModelLoader<GlideUrl, InputStream> urlLoader;
+
+        Loader(@NonNull ModelLoader<GlideUrl, InputStream> urlLoader) {
+            this.urlLoader = urlLoader;
+        }
+
+        @Override
+        public LoadData<InputStream> buildLoadData(@NonNull String model, int width, int height,
+                                                   @NonNull Options options) {
+            return urlLoader.buildLoadData(new FirebaseStorageUrl(model), width, height, options);
+        }
+
+        @Override
+        public boolean handles(@NonNull String model) {
+            return FirebaseStorageUrl.handles(model);
+        }
+
+        static final class Factory implements ModelLoaderFactory<String, InputStream> {
+            @NonNull
+            @Override
+            public ModelLoader<String, InputStream> build(@NonNull MultiModelLoaderFactory multiFactory) {
+                return new Loader(multiFactory.build(GlideUrl.class, InputStream.class));
+            }
+
+            @Override
+            public void teardown() { }
+        }
+    }
+}
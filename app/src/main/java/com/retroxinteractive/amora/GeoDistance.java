@@ -0,0 +1,80 @@
+package com.retroxinteractive.amora;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Shared distance kernel (km) for the feed, Nearby and profile screens.
+ *
+ * A {@link Viewer} precomputes the viewer's radians and cosine once per scoring pass.
+ * Short ranges use an equirectangular estimate (one sqrt, no trig per candidate);
+ * haversine is only evaluated when the estimate says the candidate is far away.
+ */
+public final class GeoDistance {
+
+    public static final double EARTH_RADIUS_KM = 6371.0;
+
+    /** Below this the equirectangular estimate is within ~0.3% of haversine. */
+    static final double FAST_PATH_MAX_KM = 20.0;
+
+    private static final double DEG_TO_RAD = Math.PI / 180.0;
+
+    private GeoDistance() { }
+
+    /**
+     * Haversine distance in km between 2 lat/lng pairs.
+     */
+    public static double haversineKm(double lat1, double lon1, double lat2, double lon2) {
+        return new Viewer(lat1, lon1).haversineKm(lat2, lon2);
+    }
+
+    /** The viewer's position, prepared once and reused for every candidate. */
+    public static final class Viewer {
+        private final double latRad;
+        private final double lngRad;
+        private final double cosLat;
+
+        public Viewer(double latitude, double longitude) {
+            latRad = latitude * DEG_TO_RAD;
+            lngRad = longitude * DEG_TO_RAD;
+            cosLat = Math.cos(latRad);
+        }
+
+        public double distanceKm(double latitude, double longitude) {
+            double dLat = latitude * DEG_TO_RAD - latRad;
+            double dLng = wrap(longitude * DEG_TO_RAD - lngRad);
+
+            // Equirectangular: good enough (and much cheaper) at dating-app distances
+            double x = dLng * cosLat;
+            double approx = EARTH_RADIUS_KM * Math.sqrt(x * x + dLat * dLat);
+            if (approx < FAST_PATH_MAX_KM) {
+                return approx;
+            }
+            return haversineKm(latitude, longitude);
+        }
+
+        /**
+         * Distances for a whole candidate array in one call. {@code NaN} coordinates
+         * (unknown location) produce {@code NaN}.
+         */
+        public void distancesKm(@NonNull double[] latitudes, @NonNull double[] longitudes,
+                                int count, @NonNull double[] out) {
+            for (int i = 0; i < count; i++) {
+                out[i] = distanceKm(latitudes[i], longitudes[i]);
+            }
+        }
+
+        double haversineKm(double latitude, double longitude) {
+            double lat2 = latitude * DEG_TO_RAD;
+            double sinDLat = Math.sin((lat2 - latRad) / 2);
+            double sinDLng = Math.sin(wrap(longitude * DEG_TO_RAD - lngRad) / 2);
+            double a = sinDLat * sinDLat + cosLat * Math.cos(lat2) * sinDLng * sinDLng;
+            return 2 * EARTH_RADIUS_KM * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+        }
+
+        private static double wrap(double dLngRad) {
+            if (dLngRad > Math.PI) return dLngRad - 2 * Math.PI;
+            if (dLngRad < -Math.PI) return dLngRad + 2 * Math.PI;
+            return dLngRad;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.retroxinteractive.amora;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Minimal geohash helper used to index users by location.
+ *
+ * ProfileDetailsActivity stores {@code geohash} next to latitude/longitude, and the
+ * Nearby query only asks Firebase for the handful of cells that cover the search radius
+ * instead of downloading every user. Requires {@code ".indexOn": ["geohash"]} on /profileCards.
+ */
+public final class GeoHash {
+
+    /** Precision written to the database (~1 m cells). */
+    public static final int STORED_PRECISION = 10;
+
+    private static final String BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz";
+    private static final double KM_PER_DEGREE_LAT = 111.32;
+
+    private GeoHash() { }
+
+    /**
+     * Encodes a coordinate into a geohash string of {@code precision} characters.
+     */
+    public static String encode(double latitude, double longitude, int precision) {
+        double minLat = -90, maxLat = 90;
+        double minLng = -180, maxLng = 180;
+
+        StringBuilder hash = new StringBuilder(precision);
+        boolean evenBit = true; // even bits encode longitude
+        int bit = 0;
+        int ch = 0;
+
+        while (hash.length() < precision) {
+            if (evenBit) {
+                double mid = (minLng + maxLng) / 2;
+                if (longitude >= mid) {
+                    ch = (ch << 1) | 1;
+                    minLng = mid;
+                } else {
+                    ch = ch << 1;
+                    maxLng = mid;
+                }
+            } else {
+                double mid = (minLat + maxLat) / 2;
+                if (latitude >= mid) {
+                    ch = (ch << 1) | 1;
+                    minLat = mid;
+                } else {
+                    ch = ch << 1;
+                    maxLat = mid;
+                }
+            }
+            evenBit = !evenBit;
+
+            if (++bit == 5) {
+                hash.append(BASE32.charAt(ch));
+                bit = 0;
+                ch = 0;
+            }
+        }
+        return hash.toString();
+    }
+
+    /**
+     * Returns the geohash prefixes whose cells together cover a circle of
+     * {@code radiusKm} around the given point (at most 9 cells).
+     */
+    public static List<String> coveringCells(double latitude, double longitude, double radiusKm) {
+        double dLat = radiusKm / KM_PER_DEGREE_LAT;
+        double cosLat = Math.cos(Math.toRadians(latitude));
+        double dLng = cosLat < 1e-6 ? 180 : Math.min(180, dLat / cosLat);
+
+        int precision = precisionFor(dLat, dLng);
+
+        // Cells are at least as large as the radius, so a 3x3 grid of sample points spaced
+        // one radius apart hits every cell that intersects the bounding box.
+        Set<String> cells = new LinkedHashSet<>();
+        for (int i = -1; i <= 1; i++) {
+            double lat = clampLatitude(latitude + i * dLat);
+            for (int j = -1; j <= 1; j++) {
+                double lng = wrapLongitude(longitude + j * dLng);
+                cells.add(encode(lat, lng, precision));
+            }
+        }
+        return new ArrayList<>(cells);
+    }
+
+    /**
+     * Largest precision whose cell is still at least dLat x dLng degrees.
+     */
+    static int precisionFor(double dLat, double dLng) {
+        int precision = 1;
+        for (int p = 1; p <= STORED_PRECISION; p++) {
+            int bits = p * 5;
+            int lngBits = (bits + 1) / 2;
+            int latBits = bits / 2;
+            double cellLng = 360.0 / (1L << lngBits);
+            double cellLat = 180.0 / (1L << latBits);
+            if (cellLat < dLat || cellLng < dLng) {
+                break;
+            }
+            precision = p;
+        }
+        return precision;
+    }
+
+    private static double clampLatitude(double lat) {
+        return Math.max(-90, Math.min(89.999999, lat));
+    }
+
+    private static double wrapLongitude(double lng) {
+        if (lng >= 180) return lng - 360;
+        if (lng < -180) return lng + 360;
+        return lng;
+    }
+}
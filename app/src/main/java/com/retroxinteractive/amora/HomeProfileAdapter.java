@@ -1,6 +1,7 @@
 package com.retroxinteractive.amora;
 
 import android.content.Context;
+import android.graphics.drawable.Drawable;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -10,32 +11,50 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AsyncListDiffer;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.ListPreloader;
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.load.DecodeFormat;
+import com.bumptech.glide.util.ViewPreloadSizeProvider;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
-public class HomeProfileAdapter extends RecyclerView.Adapter<HomeProfileAdapter.ProfileViewHolder> {
+public class HomeProfileAdapter extends RecyclerView.Adapter<HomeProfileAdapter.ProfileViewHolder>
+        implements ListPreloader.PreloadModelProvider<UserProfile> {
 
     private final Context context;
-    private final List<UserProfile> profiles = new ArrayList<>();
+    private final AsyncListDiffer<UserProfile> differ =
+            new AsyncListDiffer<>(this, new ProfileDiffCallback());
+    private final ProfileDiffCallback.StableIds stableIds = new ProfileDiffCallback.StableIds();
+
+    /** Card image size for {@link ImagePreloading}; taken from the first inflated card. */
+    final ViewPreloadSizeProvider<UserProfile> preloadSizes = new ViewPreloadSizeProvider<>();
+    private int imageWidthPx;
 
     public HomeProfileAdapter(Context context) {
         this.context = context;
+        setHasStableIds(true);
     }
 
+    /**
+     * Diffs against the current list off the main thread; only changed cards rebind.
+     */
     public void setProfiles(List<UserProfile> newProfiles) {
-        profiles.clear();
-        if (newProfiles != null) {
-            profiles.addAll(newProfiles);
-        }
-        notifyDataSetChanged();
+        differ.submitList(newProfiles != null ? new ArrayList<>(newProfiles) : null);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return stableIds.idFor(differ.getCurrentList().get(position).getUid());
     }
 
     @NonNull
@@ -43,12 +62,25 @@ public class HomeProfileAdapter extends RecyclerView.Adapter<HomeProfileAdapter.
     public ProfileViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         View view = LayoutInflater.from(context)
                 .inflate(R.layout.profile_card_homepage, parent, false);
-        return new ProfileViewHolder(view);
+        ProfileViewHolder holder = new ProfileViewHolder(view);
+        preloadSizes.setView(holder.imgProfile);
+        return holder;
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ProfileViewHolder holder, int position,
+                                 @NonNull List<Object> payloads) {
+        if (payloads.contains(ProfileDiffCallback.PAYLOAD_SCORES)) {
+            // Only distance / match changed → leave name, chips and image alone
+            bindScores(holder, differ.getCurrentList().get(position));
+            return;
+        }
+        super.onBindViewHolder(holder, position, payloads);
     }
 
     @Override
     public void onBindViewHolder(@NonNull ProfileViewHolder holder, int position) {
-        UserProfile profile = profiles.get(position);
+        UserProfile profile = differ.getCurrentList().get(position);
 
         // Name
         String str = profile.getName() + ", " + profile.getAge();
@@ -63,23 +95,8 @@ public class HomeProfileAdapter extends RecyclerView.Adapter<HomeProfileAdapter.
             holder.tvBio.setVisibility(View.GONE);
         }
 
-        // Distance
-        if (profile.getDistanceKm() != null) {
-            String text = String.format("%.1f km", profile.getDistanceKm());
-            holder.tvDistance.setText(text);
-            holder.layoutDistance.setVisibility(View.VISIBLE);
-        } else {
-            holder.layoutDistance.setVisibility(View.GONE);
-        }
-
-        // Match %
-        if (profile.getMatchPercent() != null) {
-            str = profile.getMatchPercent() + "%";
-            holder.tvMatchPercent.setText(str);
-            holder.layoutMatch.setVisibility(View.VISIBLE);
-        } else {
-            holder.layoutMatch.setVisibility(View.GONE);
-        }
+        // Distance + match %
+        bindScores(holder, profile);
 
         // Interests – show up to 3 in the 3 chips
         List<String> interests = profile.getInterests();
@@ -95,11 +112,8 @@ public class HomeProfileAdapter extends RecyclerView.Adapter<HomeProfileAdapter.
 
         // Profile image
         if (profile.getPhotoUrl() != null && !profile.getPhotoUrl().isEmpty()) {
-            Glide.with(context)
-                    .load(profile.getPhotoUrl())
-                    .placeholder(R.drawable.ic_profile)
-                    .centerCrop()
-                    .into(holder.imgProfile);
+            imageWidthPx = ImageVariants.targetPx(holder.imgProfile);
+            imageRequest(profile).into(holder.imgProfile);
         } else {
             holder.imgProfile.setImageResource(R.drawable.ic_profile);
         }
@@ -121,6 +135,53 @@ public class HomeProfileAdapter extends RecyclerView.Adapter<HomeProfileAdapter.
         });
     }
 
+    /** Thumbnail variant sized for the card, not the full upload. Shared with the preloader. */
+    @NonNull
+    private RequestBuilder<Drawable> imageRequest(@NonNull UserProfile profile) {
+        return Glide.with(context)
+                .load(ImageVariants.pick(profile, imageWidthPx))
+                .placeholder(R.drawable.ic_profile)
+                .format(DecodeFormat.PREFER_RGB_565) // opaque photo, half the bytes
+                .centerCrop();
+    }
+
+    @NonNull
+    @Override
+    public List<UserProfile> getPreloadItems(int position) {
+        List<UserProfile> current = differ.getCurrentList();
+        if (position >= current.size() || imageWidthPx == 0) return Collections.emptyList();
+
+        UserProfile profile = current.get(position);
+        return profile.getPhotoUrl() != null && !profile.getPhotoUrl().isEmpty()
+                ? Collections.singletonList(profile)
+                : Collections.emptyList();
+    }
+
+    @Override
+    public RequestBuilder<?> getPreloadRequestBuilder(@NonNull UserProfile profile) {
+        return imageRequest(profile);
+    }
+
+    private void bindScores(@NonNull ProfileViewHolder holder, @NonNull UserProfile profile) {
+        // Distance
+        if (profile.getDistanceKm() != null) {
+            String text = String.format("%.1f km", profile.getDistanceKm());
+            holder.tvDistance.setText(text);
+            holder.layoutDistance.setVisibility(View.VISIBLE);
+        } else {
+            holder.layoutDistance.setVisibility(View.GONE);
+        }
+
+        // Match %
+        if (profile.getMatchPercent() != null) {
+            String str = profile.getMatchPercent() + "%";
+            holder.tvMatchPercent.setText(str);
+            holder.layoutMatch.setVisibility(View.VISIBLE);
+        } else {
+            holder.layoutMatch.setVisibility(View.GONE);
+        }
+    }
+
     private void handleLikeClick(Context context, String otherId) {
 
         FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
@@ -181,7 +242,7 @@ public class HomeProfileAdapter extends RecyclerView.Adapter<HomeProfileAdapter.
 
     @Override
     public int getItemCount() {
-        return profiles.size();
+        return differ.getCurrentList().size();
     }
 
     static class ProfileViewHolder extends RecyclerView.ViewHolder {
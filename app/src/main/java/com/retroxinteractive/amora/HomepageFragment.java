@@ -26,14 +26,12 @@ import com.google.firebase.database.ValueEventListener;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
 
 public class HomepageFragment extends Fragment {
 
     private HomeProfileAdapter adapter;
 
-    private DatabaseReference usersRef;
-    private ValueEventListener usersListener;
+    private ProfileRepository.Listener profilesListener;
     private TextView tvLocation;
     private ImageView img_avatar;
     FirebaseUser currentUser;
@@ -43,6 +41,18 @@ public class HomepageFragment extends Fragment {
     // Data
     private final List<UserProfile> allProfiles = new ArrayList<>();
     private final List<UserProfile> nearbyProfiles = new ArrayList<>();
+    // Precomputed server ranking (/feeds/{uid}); empty until loaded or if none exists
+    private final List<UserProfile> feedProfiles = new ArrayList<>();
+
+    // For You shows the best forYouLimit candidates; grows a page at a time as pages arrive
+    private int forYouLimit = ProfileRepository.PAGE_SIZE;
+    // Locally ranked For You cards in the order shown; later pages only append after them
+    private final List<String> forYouShown = new ArrayList<>();
+    private boolean waitingForPage = false;
+
+    // Nearby radius and the position the current nearby results were fetched for
+    private static final double NEARBY_RADIUS_KM = 5.0;
+    private Double nearbyCenterLat, nearbyCenterLng;
 
     // State: which tab is active
     private boolean showingNearby = false;
@@ -71,9 +81,31 @@ public class HomepageFragment extends Fragment {
 
         adapter = new HomeProfileAdapter(requireContext());
         rvProfiles.setAdapter(adapter);
+        ImagePreloading.attach(rvProfiles, Glide.with(this), adapter, adapter.preloadSizes);
+
+        // Fetch the next page a few cards before the end of the carousel
+        layoutManager.setInitialPrefetchItemCount(2);
+        rvProfiles.addOnScrollListener(new PagingScrollListener(layoutManager, 3) {
+            @Override
+            protected void onLoadMore() {
+                if (showingNearby || waitingForPage) return;
+
+                // Called on every scroll near the end: one page at a time, and the cut only
+                // widens once that page is in
+                waitingForPage = true;
+                ProfileRepository.getInstance().loadNextPage(() -> {
+                    waitingForPage = false;
+                    if (adapter == null) return;
+                    int available = feedProfiles.isEmpty() ? allProfiles.size() : feedProfiles.size();
+                    if (forYouLimit < available) {
+                        forYouLimit += ProfileRepository.PAGE_SIZE;
+                        applyCurrentFilter();
+                    }
+                });
+            }
+        });
 
         FirebaseAuth mAuth = FirebaseAuth.getInstance();
-        usersRef = FirebaseDatabase.getInstance().getReference("users");
 
         tvLocation = view.findViewById(R.id.tv_location);
         img_avatar = view.findViewById(R.id.img_avatar);
@@ -84,12 +116,13 @@ public class HomepageFragment extends Fragment {
             return;
         }
 
-        setFields();
-        attachUsersListener(currentUser.getUid());
-
         tabForYou = view.findViewById(R.id.tab_for_you);
         tabNearby = view.findViewById(R.id.tab_nearby);
 
+        setFields();
+        attachUsersListener();
+        loadServerFeed();
+
         // Tab clicks
         tabForYou.setOnClickListener(v -> {
             showingNearby = false;
@@ -157,118 +190,19 @@ public class HomepageFragment extends Fragment {
         });
     }
 
-    private void attachUsersListener(String currentUid) {
-        usersListener = new ValueEventListener() {
+    private void attachUsersListener() {
+        profilesListener = new ProfileRepository.Listener() {
             @Override
-            public void onDataChange(@NonNull DataSnapshot snapshot) {
-
-                // Get current user's location (for distance calculation)
-                double myLat = 0.0;
-                double myLng = 0.0;
-                boolean haveMyLocation = false;
-
-                // Interests of the current user
-                List<String> myInterests = new ArrayList<>();
-
-                DataSnapshot meSnap = snapshot.child(currentUid);
-                if (meSnap.exists()) {
-                    Double lat = meSnap.child("latitude").getValue(Double.class);
-                    Double lng = meSnap.child("longitude").getValue(Double.class);
-                    if (lat != null && lng != null) {
-                        myLat = lat;
-                        myLng = lng;
-                        haveMyLocation = true;
-                    }
-
-                    // read my interests
-                    DataSnapshot myInterestsSnap = meSnap.child("interests");
-                    for (DataSnapshot iSnap : myInterestsSnap.getChildren()) {
-                        String interest = iSnap.getValue(String.class);
-                        if (interest != null && !interest.trim().isEmpty()) {
-                            myInterests.add(interest);
-                        }
-                    }
-                }
-
-                List<UserProfile> result = new ArrayList<>();
-
+            public void onProfilesChanged(@NonNull List<UserProfile> profiles) {
                 allProfiles.clear();
-                nearbyProfiles.clear();
-
-                for (DataSnapshot child : snapshot.getChildren()) {
-                    String uid = child.getKey();
-                    if (uid == null || uid.equals(currentUid)) {
-                        // Skip self or invalid key
-                        continue;
-                    }
-
-                    Boolean profileCompleted =
-                            child.child("profileCompleted").getValue(Boolean.class);
-                    if (profileCompleted != null && !profileCompleted) {
-                        // Skip incomplete profiles
-                        continue;
-                    }
-
-                    String name = child.child("name").getValue(String.class);
-                    String bio = child.child("bio").getValue(String.class);
-                    String address = child.child("address").getValue(String.class);
-                    String age = child.child("age").getValue(String.class);
-
-                    // This is how it is saved in your DB
-                    String imageUrl = child.child("profileImageUrl").getValue(String.class);
-                    Boolean verified = child.child("verified").getValue(Boolean.class);
-
-                    // Interests (0,1,2,...)
-                    List<String> interests = new ArrayList<>();
-                    DataSnapshot interestsSnap = child.child("interests");
-                    for (DataSnapshot iSnap : interestsSnap.getChildren()) {
-                        String interest = iSnap.getValue(String.class);
-                        if (interest != null && !interest.trim().isEmpty()) {
-                            interests.add(interest);
-                        }
-                    }
-
-                    // Distance
-                    Double distance = null;
-                    if (haveMyLocation) {
-                        Double lat = child.child("latitude").getValue(Double.class);
-                        Double lng = child.child("longitude").getValue(Double.class);
-                        if (lat != null && lng != null) {
-                            distance = calculateDistanceKm(myLat, myLng, lat, lng);
-                        }
-                    }
+                allProfiles.addAll(profiles);
 
-                    UserProfile profile = new UserProfile();
-                    profile.setUid(uid);
-                    profile.setName(name);
-                    profile.setBio(bio);
-                    profile.setAge(age);
-                    profile.setAddress(address);
-                    profile.setPhotoUrl(imageUrl);
-                    profile.setVerified(verified != null && verified);
-                    profile.setDistanceKm(distance);
-                    profile.setInterests(interests);
-
-                    // Match percent
-                    int matchPercent = calculateMatchPercent(myInterests, interests);
-                    profile.setMatchPercent(matchPercent);
-
-                    result.add(profile);
-
-                    allProfiles.add(profile);
-
-                    // Nearby: distance < 5km
-                    if (distance != null && distance < 5.0) {
-                        nearbyProfiles.add(profile);
-                    }
-                }
-
-                // After the loop:
                 updateCountsAndApplyCurrentFilter();
+                loadNearbyProfiles();
             }
 
             @Override
-            public void onCancelled(@NonNull DatabaseError error) {
+            public void onProfilesError(@NonNull DatabaseError error) {
                 if (!isAdded()) return;
                 Toast.makeText(
                         requireContext(),
@@ -278,12 +212,51 @@ public class HomepageFragment extends Fragment {
             }
         };
 
-        usersRef.addValueEventListener(usersListener);
+        ProfileRepository.getInstance().addListener(profilesListener);
+    }
+
+    /**
+     * For You prefers the server-ranked feed; the locally ranked list is the fallback.
+     */
+    private void loadServerFeed() {
+        ProfileRepository.getInstance().loadFeed(profiles -> {
+            if (!isAdded()) return;
+
+            feedProfiles.clear();
+            feedProfiles.addAll(profiles);
+            forYouShown.clear(); // the server order replaces the local one
+            updateCountsAndApplyCurrentFilter();
+        });
+    }
+
+    /**
+     * Nearby tab: only the geohash cells around me are fetched, not the whole user list.
+     */
+    private void loadNearbyProfiles() {
+        UserProfile me = ProfileRepository.getInstance().getMe();
+        Double lat = me != null ? me.getLatitude() : null;
+        Double lng = me != null ? me.getLongitude() : null;
+
+        // My position hasn't changed since the last query → keep current results
+        if (lat != null && lng != null && lat.equals(nearbyCenterLat) && lng.equals(nearbyCenterLng)) {
+            return;
+        }
+        nearbyCenterLat = lat;
+        nearbyCenterLng = lng;
+
+        ProfileRepository.getInstance().loadNearby(NEARBY_RADIUS_KM, profiles -> {
+            if (!isAdded()) return;
+
+            nearbyProfiles.clear();
+            nearbyProfiles.addAll(profiles);
+            updateCountsAndApplyCurrentFilter();
+        });
     }
 
     private void updateCountsAndApplyCurrentFilter() {
         // Update the labels like "For You (10)" and "Nearby (3)"
-        String str = "For You (" + allProfiles.size() + ")";
+        int forYouCount = feedProfiles.isEmpty() ? allProfiles.size() : feedProfiles.size();
+        String str = "For You (" + forYouCount + ")";
         tabForYou.setText(str);
         str = "Nearby (" + nearbyProfiles.size() + ")";
         tabNearby.setText(str);
@@ -296,8 +269,17 @@ public class HomepageFragment extends Fragment {
 
         if (showingNearby) {
             adapter.setProfiles(nearbyProfiles);
+        } else if (!feedProfiles.isEmpty()) {
+            // Already ranked on the server
+            adapter.setProfiles(feedProfiles.subList(0, Math.min(forYouLimit, feedProfiles.size())));
         } else {
-            adapter.setProfiles(allProfiles);
+            // Best matches first instead of Firebase key order; cards already shown stay put
+            List<UserProfile> ranked = ProfileRanker.forYou().extend(forYouShown, allProfiles, forYouLimit);
+            forYouShown.clear();
+            for (UserProfile p : ranked) {
+                forYouShown.add(p.getUid());
+            }
+            adapter.setProfiles(ranked);
         }
     }
 
@@ -312,71 +294,14 @@ public class HomepageFragment extends Fragment {
         }
     }
 
-    /**
-     * Haversine distance in km between 2 lat/lng pairs.
-     */
-    private double calculateDistanceKm(double lat1, double lon1,
-                                       double lat2, double lon2) {
-        double R = 6371.0; // Earth radius in km
-        double dLat = Math.toRadians(lat2 - lat1);
-        double dLon = Math.toRadians(lon2 - lon1);
-        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
-                + Math.cos(Math.toRadians(lat1))
-                * Math.cos(Math.toRadians(lat2))
-                * Math.sin(dLon / 2) * Math.sin(dLon / 2);
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-        return R * c;
-    }
-
     @Override
     public void onDestroyView() {
         super.onDestroyView();
-        if (usersListener != null) {
-            usersRef.removeEventListener(usersListener);
-            usersListener = null;
-        }
-    }
-
-    /**
-     * Returns how many of myInterests are shared with otherInterests, as a %.
-     * Example: my = ["Art","Music","Travel"], other = ["Music","Cooking"]
-     * common = 1 → 1/3 ≈ 33%.
-     */
-    private int calculateMatchPercent(List<String> myInterests, List<String> otherInterests) {
-        if (myInterests == null || myInterests.isEmpty()
-                || otherInterests == null || otherInterests.isEmpty()) {
-            return 0;
-        }
-
-        // count only non-empty items in myInterests
-        int baseCount = 0;
-        for (String s : myInterests) {
-            if (s != null && !s.trim().isEmpty()) {
-                baseCount++;
-            }
-        }
-        if (baseCount == 0) return 0;
-
-        int common = getCommon(myInterests, otherInterests);
-
-        return (int) Math.round(common * 100.0 / baseCount);
-    }
-
-    private int getCommon(List<String> myInterests, List<String> otherInterests) {
-        int common = 0;
-        for (String mine : myInterests) {
-            if (mine == null || mine.trim().isEmpty()) continue;
-            String mineNorm = mine.trim().toLowerCase();
-
-            // see if other user has this interest (case-insensitive)
-            for (String other : otherInterests) {
-                if (other == null || other.trim().isEmpty()) continue;
-                if (mineNorm.equals(other.trim().toLowerCase())) {
-                    common++;
-                    break; // avoid double-counting
-                }
-            }
+        adapter = null;
+        waitingForPage = false;
+        if (profilesListener != null) {
+            ProfileRepository.getInstance().removeListener(profilesListener);
+            profilesListener = null;
         }
-        return common;
     }
-}
+}
\ No newline at end of file
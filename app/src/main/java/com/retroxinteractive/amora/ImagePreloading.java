@@ -0,0 +1,49 @@
+package com.retroxinteractive.amora;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.GridLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.bumptech.glide.ListPreloader;
+import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.integration.recyclerview.RecyclerViewPreloader;
+import com.bumptech.glide.util.ViewPreloadSizeProvider;
+
+/**
+ * Starts card image requests a few rows before they scroll into view, so a fling lands
+ * on images that are already in the memory cache.
+ *
+ * The adapter supplies the models and builds the exact request it binds with; a
+ * {@link ViewPreloadSizeProvider} fed the card's ImageView supplies the exact size.
+ * Both have to match the bind for the memory cache key to hit.
+ */
+public final class ImagePreloading {
+
+    /** Rows (or, in a single-span list, items) preloaded ahead of the scroll direction. */
+    static final int ROWS_AHEAD = 3;
+
+    private ImagePreloading() { }
+
+    /** Preload window for {@code layoutManager}: {@link #ROWS_AHEAD} rows of its spans. */
+    static int windowFor(@NonNull RecyclerView.LayoutManager layoutManager) {
+        int spans = layoutManager instanceof GridLayoutManager
+                ? ((GridLayoutManager) layoutManager).getSpanCount()
+                : 1;
+        return spans * ROWS_AHEAD;
+    }
+
+    /**
+     * Adds a preloader to {@code recyclerView}. The scroll direction (horizontal carousel
+     * or vertical grid) is picked up from the scroll events, so one setup fits both.
+     */
+    public static <T> void attach(@NonNull RecyclerView recyclerView,
+                                  @NonNull RequestManager requestManager,
+                                  @NonNull ListPreloader.PreloadModelProvider<T> models,
+                                  @NonNull ViewPreloadSizeProvider<T> sizes) {
+        RecyclerView.LayoutManager layoutManager = recyclerView.getLayoutManager();
+        if (layoutManager == null) return;
+
+        recyclerView.addOnScrollListener(new RecyclerViewPreloader<>(
+                requestManager, models, sizes, windowFor(layoutManager)));
+    }
+}
@@ -0,0 +1,274 @@
+package com.retroxinteractive.amora;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.media.ExifInterface;
+import android.net.Uri;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Shrinks a picked photo before it is uploaded: decodes with inSampleSize, applies the
+ * EXIF orientation, caps the longest edge and re-encodes as JPEG within a byte budget.
+ * Re-encoding drops all EXIF (GPS, camera, ...) from the uploaded file; the fallback for
+ * images that can't be decoded strips it explicitly.
+ *
+ * A 4–12 MB camera JPEG typically ends up at a few hundred KB.
+ *
+ * Output goes to app-private storage ({@link #pendingDir}) rather than the cache, because
+ * {@link PhotoUploadWorker} may only get to it after a restart, when the picker's
+ * content:// grant is long gone.
+ */
+public final class ImagePreprocessor {
+
+    public interface Callback {
+        /** Called on the main thread with the file to upload, or null if the source is unreadable. */
+        void onPrepared(@Nullable File file);
+    }
+
+    private static final String TAG = "ImagePreprocessor";
+
+    static final int MAX_EDGE_PX = 1600;
+    static final int MAX_BYTES = 500 * 1024;
+    private static final int START_QUALITY = 85;
+    private static final int MIN_QUALITY = 55;
+    private static final int QUALITY_STEP = 10;
+
+    /** EXIF that can locate or identify the user, cleared from copied originals. */
+    private static final String[] PRIVATE_EXIF_TAGS = {
+            ExifInterface.TAG_GPS_LATITUDE, ExifInterface.TAG_GPS_LATITUDE_REF,
+            ExifInterface.TAG_GPS_LONGITUDE, ExifInterface.TAG_GPS_LONGITUDE_REF,
+            ExifInterface.TAG_GPS_ALTITUDE, ExifInterface.TAG_GPS_ALTITUDE_REF,
+            ExifInterface.TAG_GPS_TIMESTAMP, ExifInterface.TAG_GPS_DATESTAMP,
+            ExifInterface.TAG_GPS_PROCESSING_METHOD, ExifInterface.TAG_GPS_AREA_INFORMATION,
+            ExifInterface.TAG_GPS_DEST_LATITUDE, ExifInterface.TAG_GPS_DEST_LATITUDE_REF,
+            ExifInterface.TAG_GPS_DEST_LONGITUDE, ExifInterface.TAG_GPS_DEST_LONGITUDE_REF,
+            ExifInterface.TAG_GPS_DEST_BEARING, ExifInterface.TAG_GPS_DEST_BEARING_REF,
+            ExifInterface.TAG_GPS_DEST_DISTANCE, ExifInterface.TAG_GPS_DEST_DISTANCE_REF,
+            ExifInterface.TAG_GPS_IMG_DIRECTION, ExifInterface.TAG_GPS_IMG_DIRECTION_REF,
+            ExifInterface.TAG_GPS_SPEED, ExifInterface.TAG_GPS_SPEED_REF,
+            ExifInterface.TAG_GPS_TRACK, ExifInterface.TAG_GPS_TRACK_REF,
+            ExifInterface.TAG_GPS_SATELLITES, ExifInterface.TAG_GPS_STATUS,
+            ExifInterface.TAG_GPS_MEASURE_MODE, ExifInterface.TAG_GPS_DOP,
+            ExifInterface.TAG_GPS_MAP_DATUM, ExifInterface.TAG_GPS_DIFFERENTIAL,
+            ExifInterface.TAG_GPS_VERSION_ID,
+            ExifInterface.TAG_MAKE, ExifInterface.TAG_MODEL, ExifInterface.TAG_SOFTWARE,
+            ExifInterface.TAG_ARTIST, ExifInterface.TAG_COPYRIGHT,
+            ExifInterface.TAG_DATETIME, ExifInterface.TAG_DATETIME_ORIGINAL,
+            ExifInterface.TAG_DATETIME_DIGITIZED, ExifInterface.TAG_USER_COMMENT,
+            ExifInterface.TAG_IMAGE_DESCRIPTION, ExifInterface.TAG_IMAGE_UNIQUE_ID,
+            ExifInterface.TAG_MAKER_NOTE,
+            // No constants for these on every supported API level
+            "CameraOwnerName", "BodySerialNumber", "LensMake", "LensModel", "LensSerialNumber",
+    };
+
+    private ImagePreprocessor() { }
+
+    /**
+     * Prepares {@code source} on {@link AppExecutors#io()}. If it can't be re-encoded a JPEG
+     * original is copied instead with its private EXIF removed, so the upload still
+     * happens; other formats are rejected, as their metadata can't be stripped here.
+     */
+    public static void prepareAsync(@NonNull Context context, @NonNull Uri source,
+                                    @NonNull Callback callback) {
+        Context app = context.getApplicationContext();
+        AppExecutors.io().execute(() -> {
+            File prepared = null;
+            try {
+                prepared = prepare(app, source);
+            } catch (IOException | RuntimeException | OutOfMemoryError e) {
+                Log.w(TAG, "Falling back to the original image", e);
+                try {
+                    prepared = copyOriginal(app, source);
+                } catch (IOException copyError) {
+                    Log.w(TAG, "Cannot read picked image", copyError);
+                }
+            }
+            File result = prepared;
+            AppExecutors.mainThread().execute(() -> callback.onPrepared(result));
+        });
+    }
+
+    /** Where prepared files wait for their upload; the uploader deletes them when done. */
+    @NonNull
+    static File pendingDir(@NonNull Context context) throws IOException {
+        File dir = new File(context.getFilesDir(), "pending_uploads");
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        return dir;
+    }
+
+    /**
+     * Blocking version; call off the main thread. Returns a JPEG in {@link #pendingDir}
+     * that the uploader deletes once uploaded.
+     */
+    @NonNull
+    public static File prepare(@NonNull Context context, @NonNull Uri source) throws IOException {
+        ContentResolver resolver = context.getContentResolver();
+
+        // 1) Bounds only
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        try (InputStream in = open(resolver, source)) {
+            BitmapFactory.decodeStream(in, null, bounds);
+        }
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            throw new IOException("Not a decodable image: " + source);
+        }
+
+        // 2) Subsampled decode: never more than ~2x the pixels we keep
+        BitmapFactory.Options opts = new BitmapFactory.Options();
+        opts.inSampleSize = sampleSizeFor(bounds.outWidth, bounds.outHeight, MAX_EDGE_PX);
+        Bitmap decoded;
+        try (InputStream in = open(resolver, source)) {
+            decoded = BitmapFactory.decodeStream(in, null, opts);
+        }
+        if (decoded == null) {
+            throw new IOException("Decode failed: " + source);
+        }
+
+        // 3) Exact size cap + orientation in one transform
+        Bitmap oriented = transform(decoded, readOrientation(resolver, source), MAX_EDGE_PX);
+        if (oriented != decoded) decoded.recycle();
+
+        // 4) Re-encode within the byte budget
+        byte[] jpeg = encodeWithinBudget(oriented);
+        oriented.recycle();
+
+        File out = File.createTempFile("photo_", ".jpg", pendingDir(context));
+        try (FileOutputStream fos = new FileOutputStream(out)) {
+            fos.write(jpeg);
+        }
+        return out;
+    }
+
+    /**
+     * Copies a JPEG original unchanged apart from {@link #PRIVATE_EXIF_TAGS}. The .jpg name
+     * is what gives the upload its image/jpeg content type.
+     */
+    @NonNull
+    private static File copyOriginal(@NonNull Context context, @NonNull Uri source) throws IOException {
+        ContentResolver resolver = context.getContentResolver();
+        String type = resolver.getType(source);
+        if (!"image/jpeg".equals(type)) {
+            // ExifInterface only rewrites JPEG; never upload metadata we can't strip
+            throw new IOException("Cannot strip metadata from " + type + ": " + source);
+        }
+
+        File out = File.createTempFile("photo_", ".jpg", pendingDir(context));
+        try {
+            try (InputStream in = open(resolver, source);
+                 FileOutputStream fos = new FileOutputStream(out)) {
+                byte[] buffer = new byte[64 * 1024];
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    fos.write(buffer, 0, n);
+                }
+            }
+            ExifInterface exif = new ExifInterface(out.getAbsolutePath());
+            for (String tag : PRIVATE_EXIF_TAGS) {
+                exif.setAttribute(tag, null);
+            }
+            exif.saveAttributes();
+        } catch (IOException | RuntimeException e) {
+            out.delete();
+            throw new IOException("Cannot copy " + source, e);
+        }
+        return out;
+    }
+
+    /** Largest power of two that keeps the longest edge at or above {@code maxEdge}. */
+    static int sampleSizeFor(int width, int height, int maxEdge) {
+        int longest = Math.max(width, height);
+        int sample = 1;
+        while (longest / (sample * 2) >= maxEdge) {
+            sample *= 2;
+        }
+        return sample;
+    }
+
+    @NonNull
+    private static InputStream open(@NonNull ContentResolver resolver, @NonNull Uri uri)
+            throws IOException {
+        InputStream in = resolver.openInputStream(uri);
+        if (in == null) throw new IOException("Cannot open " + uri);
+        return in;
+    }
+
+    private static int readOrientation(@NonNull ContentResolver resolver, @NonNull Uri uri) {
+        try (InputStream in = open(resolver, uri)) {
+            return new ExifInterface(in).getAttributeInt(
+                    ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+        } catch (IOException e) {
+            return ExifInterface.ORIENTATION_NORMAL;
+        }
+    }
+
+    @NonNull
+    private static Bitmap transform(@NonNull Bitmap src, int orientation, int maxEdge) {
+        Matrix m = new Matrix();
+
+        int longest = Math.max(src.getWidth(), src.getHeight());
+        if (longest > maxEdge) {
+            float scale = (float) maxEdge / longest;
+            m.postScale(scale, scale);
+        }
+
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_ROTATE_90:
+                m.postRotate(90);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_180:
+                m.postRotate(180);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                m.postRotate(270);
+                break;
+            case ExifInterface.ORIENTATION_FLIP_HORIZONTAL:
+                m.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_FLIP_VERTICAL:
+                m.postScale(1, -1);
+                break;
+            case ExifInterface.ORIENTATION_TRANSPOSE:
+                m.postRotate(90);
+                m.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_TRANSVERSE:
+                m.postRotate(270);
+                m.postScale(-1, 1);
+                break;
+            default:
+                break;
+        }
+
+        if (m.isIdentity()) return src;
+        return Bitmap.createBitmap(src, 0, 0, src.getWidth(), src.getHeight(), m, true);
+    }
+
+    @NonNull
+    private static byte[] encodeWithinBudget(@NonNull Bitmap bitmap) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int quality = START_QUALITY;
+        while (true) {
+            out.reset();
+            bitmap.compress(Bitmap.CompressFormat.JPEG, quality, out);
+            if (out.size() <= MAX_BYTES || quality <= MIN_QUALITY) {
+                return out.toByteArray();
+            }
+            quality -= QUALITY_STEP;
+        }
+    }
+}
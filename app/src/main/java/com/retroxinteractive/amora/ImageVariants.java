@@ -0,0 +1,59 @@
+package com.retroxinteractive.amora;
+
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Map;
+
+/**
+ * Picks which server-generated thumbnail (onImageUploaded Cloud Function) to load for a
+ * view, so cards stop downloading and decoding full-resolution uploads.
+ */
+public final class ImageVariants {
+
+    /** Longest edge of each variant, px. Mirrors SIZES in functions/thumbnails.js. */
+    static final int[] SIZES = {128, 400, 1080};
+
+    private ImageVariants() { }
+
+    /**
+     * Smallest variant at least {@code targetPx} wide; the original when there are no
+     * variants yet (upload still processing, or older photos) or the view is bigger
+     * than the largest one.
+     */
+    @Nullable
+    public static String pick(@Nullable String originalUrl,
+                              @Nullable Map<String, String> variants,
+                              int targetPx) {
+        if (variants == null || variants.isEmpty()) return originalUrl;
+
+        for (int size : SIZES) {
+            if (size >= targetPx) {
+                String url = variants.get(String.valueOf(size));
+                if (url != null) return url;
+            }
+        }
+        return originalUrl;
+    }
+
+    @Nullable
+    public static String pick(@NonNull UserProfile profile, int targetPx) {
+        return pick(profile.getPhotoUrl(), profile.getPhotoThumbs(), targetPx);
+    }
+
+    /**
+     * Width the image will be drawn at: the laid-out width if known, else the layout
+     * param width, else the parent's (e.g. first bind of a match_parent card).
+     */
+    public static int targetPx(@NonNull View view) {
+        if (view.getWidth() > 0) return view.getWidth();
+
+        ViewGroup.LayoutParams lp = view.getLayoutParams();
+        if (lp != null && lp.width > 0) return lp.width;
+
+        return view.getResources().getDisplayMetrics().widthPixels;
+    }
+}
@@ -0,0 +1,157 @@
+package com.retroxinteractive.amora;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Inverted index interest id → sorted uids, kept up to date as profiles are ingested.
+ *
+ * Owned by ProfileRepository's worker thread. {@link #snapshot()} freezes it into sorted
+ * arrays for the main thread, re-copying only the posting lists that changed, so a
+ * multi-interest filter is a posting-list intersection instead of a scan of every profile.
+ */
+final class InterestIndex {
+
+    private final Map<Integer, TreeSet<String>> postings = new HashMap<>();
+    private final Set<Integer> dirty = new HashSet<>();
+    private Snapshot current = Snapshot.EMPTY;
+
+    void add(@NonNull UserProfile profile) {
+        String uid = profile.getUid();
+        long[] bits = profile.getInterestBits();
+        for (int w = 0; w < bits.length; w++) {
+            long word = bits[w];
+            while (word != 0) {
+                int id = (w << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+
+                TreeSet<String> uids = postings.get(id);
+                if (uids == null) {
+                    uids = new TreeSet<>();
+                    postings.put(id, uids);
+                }
+                uids.add(uid);
+                dirty.add(id);
+            }
+        }
+    }
+
+    void remove(@NonNull UserProfile profile) {
+        String uid = profile.getUid();
+        long[] bits = profile.getInterestBits();
+        for (int w = 0; w < bits.length; w++) {
+            long word = bits[w];
+            while (word != 0) {
+                int id = (w << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+
+                TreeSet<String> uids = postings.get(id);
+                if (uids != null && uids.remove(uid)) {
+                    if (uids.isEmpty()) postings.remove(id);
+                    dirty.add(id);
+                }
+            }
+        }
+    }
+
+    void clear() {
+        postings.clear();
+        dirty.clear();
+        current = Snapshot.EMPTY;
+    }
+
+    @NonNull
+    Snapshot snapshot() {
+        if (dirty.isEmpty()) return current;
+
+        Map<Integer, String[]> frozen = new HashMap<>(current.postings);
+        for (Integer id : dirty) {
+            TreeSet<String> uids = postings.get(id);
+            if (uids == null) {
+                frozen.remove(id);
+            } else {
+                frozen.put(id, uids.toArray(new String[0]));
+            }
+        }
+        dirty.clear();
+        current = new Snapshot(frozen);
+        return current;
+    }
+
+    /** Immutable view handed to the main thread. */
+    static final class Snapshot {
+
+        static final Snapshot EMPTY = new Snapshot(Collections.emptyMap());
+
+        private final Map<Integer, String[]> postings;
+
+        private Snapshot(@NonNull Map<Integer, String[]> postings) {
+            this.postings = postings;
+        }
+
+        /** Interest ids that at least one profile has, ascending. */
+        @NonNull
+        int[] interestIds() {
+            int[] ids = new int[postings.size()];
+            int i = 0;
+            for (Integer id : postings.keySet()) {
+                ids[i++] = id;
+            }
+            Arrays.sort(ids);
+            return ids;
+        }
+
+        /**
+         * Uids (sorted) having every one of {@code ids}. Intersects starting from the
+         * shortest posting list.
+         */
+        @NonNull
+        List<String> intersect(@NonNull int[] ids) {
+            if (ids.length == 0) return Collections.emptyList();
+
+            String[][] lists = new String[ids.length][];
+            for (int i = 0; i < ids.length; i++) {
+                lists[i] = postings.get(ids[i]);
+                if (lists[i] == null) return Collections.emptyList();
+            }
+            Arrays.sort(lists, (a, b) -> Integer.compare(a.length, b.length));
+
+            String[] result = lists[0];
+            int size = result.length;
+            for (int l = 1; l < lists.length && size > 0; l++) {
+                String[] other = lists[l];
+                String[] next = new String[size];
+                int n = 0, i = 0, j = 0;
+                while (i < size && j < other.length) {
+                    int cmp = result[i].compareTo(other[j]);
+                    if (cmp == 0) {
+                        next[n++] = result[i];
+                        i++;
+                        j++;
+                    } else if (cmp < 0) {
+                        i++;
+                    } else {
+                        j++;
+                    }
+                }
+                result = next;
+                size = n;
+            }
+
+            List<String> out = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                out.add(result[i]);
+            }
+            return out;
+        }
+    }
+}
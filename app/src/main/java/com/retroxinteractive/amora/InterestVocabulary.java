@@ -0,0 +1,116 @@
+package com.retroxinteractive.amora;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide interest dictionary: each normalized interest ("  Music " → "music") gets a
+ * small int id once, and a profile's interests become a bitset (long[]) over those ids.
+ *
+ * Match scoring is then popcount(mine & theirs) with no string work or allocation per
+ * candidate, which keeps ranking cheap even for tens of thousands of profiles.
+ */
+public final class InterestVocabulary {
+
+    private static final long[] EMPTY = new long[0];
+
+    private static final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private static final List<String> displayNames = new ArrayList<>();
+
+    private InterestVocabulary() { }
+
+    @NonNull
+    public static String normalize(@NonNull String interest) {
+        return interest.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Id for an interest, assigning a new one the first time it is seen.
+     * Returns -1 for blank input.
+     */
+    public static int intern(@Nullable String interest) {
+        if (interest == null) return -1;
+        String key = normalize(interest);
+        if (key.isEmpty()) return -1;
+
+        Integer id = ids.get(key);
+        if (id != null) return id;
+
+        synchronized (displayNames) {
+            id = ids.get(key);
+            if (id == null) {
+                id = displayNames.size();
+                // First spelling seen is used as the label (e.g. for filter menus)
+                displayNames.add(interest.trim());
+                ids.put(key, id);
+            }
+            return id;
+        }
+    }
+
+    /** Id of an already known interest, or -1 (never assigns a new id). */
+    public static int idOf(@Nullable String interest) {
+        if (interest == null) return -1;
+        Integer id = ids.get(normalize(interest));
+        return id != null ? id : -1;
+    }
+
+    @Nullable
+    public static String displayName(int id) {
+        synchronized (displayNames) {
+            return id >= 0 && id < displayNames.size() ? displayNames.get(id) : null;
+        }
+    }
+
+    /**
+     * Builds the bitset for a list of interests (duplicates / case variants collapse).
+     */
+    @NonNull
+    public static long[] toBits(@Nullable List<String> interests) {
+        if (interests == null || interests.isEmpty()) return EMPTY;
+
+        long[] bits = EMPTY;
+        for (String interest : interests) {
+            int id = intern(interest);
+            if (id < 0) continue;
+
+            int word = id >>> 6;
+            if (word >= bits.length) {
+                long[] grown = new long[word + 1];
+                System.arraycopy(bits, 0, grown, 0, bits.length);
+                bits = grown;
+            }
+            bits[word] |= 1L << id;
+        }
+        return bits;
+    }
+
+    public static int count(@NonNull long[] bits) {
+        int n = 0;
+        for (long word : bits) {
+            n += Long.bitCount(word);
+        }
+        return n;
+    }
+
+    /**
+     * Share of {@code mine} that {@code theirs} also has, as a rounded %.
+     * Example: mine = {Art, Music, Travel}, theirs = {Music, Cooking} → 1/3 ≈ 33%.
+     */
+    public static int matchPercent(@NonNull long[] mine, int myCount, @NonNull long[] theirs) {
+        if (myCount == 0) return 0;
+
+        int common = 0;
+        int words = Math.min(mine.length, theirs.length);
+        for (int i = 0; i < words; i++) {
+            common += Long.bitCount(mine[i] & theirs[i]);
+        }
+        return (common * 100 + myCount / 2) / myCount;
+    }
+}
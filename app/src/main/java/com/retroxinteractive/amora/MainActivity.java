@@ -55,6 +55,9 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void init(Bundle savedInstanceState) {
+        // Lets Home / Discover draw last session's cards before Firebase answers
+        ProfileRepository.getInstance().setCache(ProfileCache.getInstance(this));
+
         FrameLayout navHome = findViewById(R.id.nav_home);
         FrameLayout navDiscover = findViewById(R.id.nav_discover);
         FrameLayout navChat = findViewById(R.id.nav_chat);
@@ -1,5 +1,7 @@
 package com.retroxinteractive.amora;
 
+import com.google.firebase.database.Exclude;
+
 public class Message {
 
     private String id;
@@ -7,6 +9,7 @@ public class Message {
     private String receiverId;
     private String text;
     private long timestamp;
+    private boolean pending; // local only: still in ChatOutbox
 
     public Message() {
         // required for Firebase
@@ -31,4 +34,9 @@ public class Message {
     public void setReceiverId(String receiverId) { this.receiverId = receiverId; }
     public void setText(String text) { this.text = text; }
     public void setTimestamp(long timestamp) { this.timestamp = timestamp; }
+
+    @Exclude
+    public boolean isPending() { return pending; }
+    @Exclude
+    public void setPending(boolean pending) { this.pending = pending; }
 }
\ No newline at end of file
@@ -51,6 +51,8 @@ public class MessageAdapter extends RecyclerView.Adapter<MessageAdapter.MessageV
     public void onBindViewHolder(@NonNull MessageViewHolder holder, int position) {
         Message m = messages.get(position);
         holder.txtMessage.setText(m.getText());
+        // Still in the outbox: dimmed until Firebase confirms it
+        holder.itemView.setAlpha(m.isPending() ? 0.5f : 1f);
     }
 
     @Override
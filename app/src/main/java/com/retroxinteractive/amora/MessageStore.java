@@ -0,0 +1,320 @@
+package com.retroxinteractive.amora;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * On-device copy of recent chat messages per room, so ChatFragment can draw a
+ * conversation before Firebase has answered and then only ask for what is newer.
+ *
+ * Each room keeps a contiguous run of messages up to its {@link SyncMark} (live messages
+ * are appended and move the mark, older pages prepended, the oldest trimmed past
+ * {@link #MAX_PER_ROOM}), which is what lets scroll-up paging read from here before going
+ * to the network. Reads never return rows past the mark.
+ *
+ * It also holds the {@link ChatOutbox}: messages written locally but not yet confirmed by
+ * Firebase, kept until delivered.
+ *
+ * Like {@link ProfileCache} it is disposable: a schema change drops it. Call from a
+ * background thread.
+ */
+public final class MessageStore extends SQLiteOpenHelper {
+
+    private static final String TAG = "MessageStore";
+
+    private static final String DB_NAME = "message_store.db";
+    // Bump whenever the columns or what they mean change; old stores are dropped
+    private static final int DB_VERSION = 3;
+
+    static final int MAX_PER_ROOM = 500;
+
+    private static final String TABLE = "messages";
+    private static final String OUTBOX_TABLE = "outbox";
+    private static final String SYNC_TABLE = "sync_marks";
+
+    private static MessageStore instance;
+
+    public static synchronized MessageStore getInstance(@NonNull Context context) {
+        if (instance == null) {
+            instance = new MessageStore(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private MessageStore(@NonNull Context context) {
+        super(context, DB_NAME, null, DB_VERSION);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE + " ("
+                + "owner_uid TEXT NOT NULL, "
+                + "room_id TEXT NOT NULL, "
+                + "id TEXT NOT NULL, "
+                + "sender_id TEXT, receiver_id TEXT, text TEXT, "
+                + "timestamp INTEGER NOT NULL, "
+                + "PRIMARY KEY (owner_uid, room_id, id))");
+        db.execSQL("CREATE INDEX messages_by_time ON " + TABLE
+                + " (owner_uid, room_id, timestamp, id)");
+        db.execSQL("CREATE TABLE " + OUTBOX_TABLE + " ("
+                + "owner_uid TEXT NOT NULL, "
+                + "id TEXT NOT NULL, "
+                + "room_id TEXT NOT NULL, "
+                + "receiver_id TEXT NOT NULL, receiver_name TEXT, receiver_photo_url TEXT, "
+                + "text TEXT NOT NULL, "
+                + "timestamp INTEGER NOT NULL, "
+                + "PRIMARY KEY (owner_uid, id))");
+        createSyncTable(db);
+    }
+
+    private static void createSyncTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + SYNC_TABLE + " ("
+                + "owner_uid TEXT NOT NULL, "
+                + "room_id TEXT NOT NULL, "
+                + "timestamp INTEGER NOT NULL, "
+                + "id TEXT NOT NULL, "
+                + "PRIMARY KEY (owner_uid, room_id))");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion == 2) {
+            // The outbox holds unsent messages, so keep it; cached rows without a sync
+            // mark can't be trusted to be contiguous and are fetched again
+            db.execSQL("DELETE FROM " + TABLE);
+            createSyncTable(db);
+            return;
+        }
+        recreate(db);
+    }
+
+    @Override
+    public void onDowngrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        recreate(db);
+    }
+
+    private void recreate(SQLiteDatabase db) {
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE);
+        db.execSQL("DROP TABLE IF EXISTS " + OUTBOX_TABLE);
+        db.execSQL("DROP TABLE IF EXISTS " + SYNC_TABLE);
+        onCreate(db);
+    }
+
+    /** How far {@code roomId} is synced, or null if nothing of it is stored yet. */
+    @Nullable
+    public SyncMark loadSyncMark(@NonNull String ownerUid, @NonNull String roomId) {
+        try (Cursor c = getReadableDatabase().query(SYNC_TABLE, new String[]{"timestamp", "id"},
+                "owner_uid = ? AND room_id = ?", new String[]{ownerUid, roomId},
+                null, null, null)) {
+            return c.moveToFirst() ? new SyncMark(c.getLong(0), c.getString(1)) : null;
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Failed to read sync mark", e);
+            return null;
+        }
+    }
+
+    /** Starts an empty room's sync mark before any message, unless it has one. */
+    public void ensureSyncMark(@NonNull String ownerUid, @NonNull String roomId) {
+        ContentValues v = new ContentValues();
+        v.put("owner_uid", ownerUid);
+        v.put("room_id", roomId);
+        v.put("timestamp", 0L);
+        v.put("id", "");
+        try {
+            getWritableDatabase().insertWithOnConflict(
+                    SYNC_TABLE, null, v, SQLiteDatabase.CONFLICT_IGNORE);
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Failed to write sync mark", e);
+        }
+    }
+
+    /** The newest {@code limit} stored messages of a room up to {@code mark}, oldest first. */
+    @NonNull
+    public List<Message> loadLatest(@NonNull String ownerUid, @NonNull String roomId,
+                                    @NonNull SyncMark mark, int limit) {
+        String ts = String.valueOf(mark.timestamp);
+        return query("owner_uid = ? AND room_id = ? AND (timestamp < ? OR (timestamp = ? AND id <= ?))",
+                new String[]{ownerUid, roomId, ts, ts, mark.id}, limit);
+    }
+
+    /**
+     * Up to {@code limit} stored messages ordered just before ({@code timestamp}, {@code id}),
+     * oldest first; the same order Firebase uses for orderByChild("timestamp").
+     */
+    @NonNull
+    public List<Message> loadBefore(@NonNull String ownerUid, @NonNull String roomId,
+                                    long timestamp, @NonNull String id, int limit) {
+        String ts = String.valueOf(timestamp);
+        return query("owner_uid = ? AND room_id = ? AND (timestamp < ? OR (timestamp = ? AND id < ?))",
+                new String[]{ownerUid, roomId, ts, ts, id}, limit);
+    }
+
+    @NonNull
+    private List<Message> query(@NonNull String where, @NonNull String[] args, int limit) {
+        List<Message> result = new ArrayList<>();
+        try (Cursor c = getReadableDatabase().query(TABLE,
+                new String[]{"id", "sender_id", "receiver_id", "text", "timestamp"},
+                where, args, null, null, "timestamp DESC, id DESC", String.valueOf(limit))) {
+            while (c.moveToNext()) {
+                result.add(new Message(c.getString(0), c.getString(1), c.getString(2),
+                        c.getString(3), c.getLong(4)));
+            }
+        } catch (RuntimeException e) {
+            // A broken store must never stop the chat from loading
+            Log.w(TAG, "Failed to read message store", e);
+            return new ArrayList<>();
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /** Inserts or replaces {@code messages} (keyed by push id), then trims the room. */
+    public void put(@NonNull String ownerUid, @NonNull String roomId, @NonNull List<Message> messages) {
+        write(ownerUid, roomId, messages, false);
+    }
+
+    /**
+     * Like {@link #put}, for a batch from the catch-up / live query: everything up to its
+     * newest message is now synced, so the room's {@link SyncMark} moves there.
+     */
+    public void putSynced(@NonNull String ownerUid, @NonNull String roomId,
+                          @NonNull List<Message> messages) {
+        write(ownerUid, roomId, messages, true);
+    }
+
+    private void write(@NonNull String ownerUid, @NonNull String roomId,
+                       @NonNull List<Message> messages, boolean advanceMark) {
+        if (messages.isEmpty()) return;
+        SyncMark mark = advanceMark ? loadSyncMark(ownerUid, roomId) : null;
+
+        SQLiteDatabase db;
+        try {
+            db = getWritableDatabase();
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Message store unavailable", e);
+            return;
+        }
+
+        db.beginTransaction();
+        try {
+            for (Message m : messages) {
+                if (m.getId() == null) continue;
+                ContentValues v = new ContentValues();
+                v.put("owner_uid", ownerUid);
+                v.put("room_id", roomId);
+                v.put("id", m.getId());
+                v.put("sender_id", m.getSenderId());
+                v.put("receiver_id", m.getReceiverId());
+                v.put("text", m.getText());
+                v.put("timestamp", m.getTimestamp());
+                db.insertWithOnConflict(TABLE, null, v, SQLiteDatabase.CONFLICT_REPLACE);
+            }
+            // Keep the newest MAX_PER_ROOM; what is left stays a contiguous run
+            db.execSQL("DELETE FROM " + TABLE + " WHERE owner_uid = ? AND room_id = ? AND id NOT IN ("
+                            + "SELECT id FROM " + TABLE + " WHERE owner_uid = ? AND room_id = ? "
+                            + "ORDER BY timestamp DESC, id DESC LIMIT " + MAX_PER_ROOM + ")",
+                    new Object[]{ownerUid, roomId, ownerUid, roomId});
+            SyncMark advanced = advanceMark ? SyncMark.advance(mark, messages) : null;
+            if (advanced != null && advanced != mark) {
+                ContentValues v = new ContentValues();
+                v.put("owner_uid", ownerUid);
+                v.put("room_id", roomId);
+                v.put("timestamp", advanced.timestamp);
+                v.put("id", advanced.id);
+                db.insertWithOnConflict(SYNC_TABLE, null, v, SQLiteDatabase.CONFLICT_REPLACE);
+            }
+            db.setTransactionSuccessful();
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Failed to write message store", e);
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    // --- Outbox ---
+
+    /** Persists an unsent message; returns false if it could not be written. */
+    public boolean putOutbox(@NonNull String ownerUid, @NonNull ChatOutbox.Entry entry) {
+        ContentValues v = new ContentValues();
+        v.put("owner_uid", ownerUid);
+        v.put("id", entry.message.getId());
+        v.put("room_id", entry.roomId);
+        v.put("receiver_id", entry.message.getReceiverId());
+        v.put("receiver_name", entry.receiverName);
+        v.put("receiver_photo_url", entry.receiverPhotoUrl);
+        v.put("text", entry.message.getText());
+        v.put("timestamp", entry.message.getTimestamp());
+        try {
+            return getWritableDatabase().insertWithOnConflict(
+                    OUTBOX_TABLE, null, v, SQLiteDatabase.CONFLICT_REPLACE) != -1;
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Failed to write outbox", e);
+            return false;
+        }
+    }
+
+    /** Unsent messages of {@code ownerUid}, oldest first; only one room if {@code roomId} is set. */
+    @NonNull
+    public List<ChatOutbox.Entry> loadOutbox(@NonNull String ownerUid, @Nullable String roomId) {
+        String where = roomId != null ? "owner_uid = ? AND room_id = ?" : "owner_uid = ?";
+        String[] args = roomId != null ? new String[]{ownerUid, roomId} : new String[]{ownerUid};
+
+        List<ChatOutbox.Entry> result = new ArrayList<>();
+        try (Cursor c = getReadableDatabase().query(OUTBOX_TABLE,
+                new String[]{"id", "room_id", "receiver_id", "receiver_name", "receiver_photo_url",
+                        "text", "timestamp"},
+                where, args, null, null, "timestamp, id")) {
+            while (c.moveToNext()) {
+                Message m = new Message(c.getString(0), ownerUid, c.getString(2),
+                        c.getString(5), c.getLong(6));
+                m.setPending(true);
+                result.add(new ChatOutbox.Entry(c.getString(1), m, c.getString(3), c.getString(4)));
+            }
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Failed to read outbox", e);
+        }
+        return result;
+    }
+
+    /**
+     * Moves a delivered message from the outbox into the room's stored messages, under the
+     * server's {@code timestamp}. It does not move the {@link SyncMark}: the peer may have
+     * written in between, and catch-up has to fetch that. Rooms with no mark yet don't get
+     * the row at all, it would sit outside any synced run.
+     */
+    public void markDelivered(@NonNull String ownerUid, @NonNull ChatOutbox.Entry entry,
+                              long timestamp) {
+        try {
+            getWritableDatabase().delete(OUTBOX_TABLE, "owner_uid = ? AND id = ?",
+                    new String[]{ownerUid, entry.message.getId()});
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Failed to update outbox", e);
+        }
+        if (loadSyncMark(ownerUid, entry.roomId) == null) return;
+        Message sent = new Message(entry.message.getId(), ownerUid, entry.message.getReceiverId(),
+                entry.message.getText(), timestamp);
+        put(ownerUid, entry.roomId, Collections.singletonList(sent));
+    }
+
+    /** Forgets everything, e.g. on logout. */
+    public void clearAll() {
+        try {
+            getWritableDatabase().delete(TABLE, null, null);
+            getWritableDatabase().delete(OUTBOX_TABLE, null, null);
+            getWritableDatabase().delete(SYNC_TABLE, null, null);
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Failed to clear message store", e);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.retroxinteractive.amora;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * Asks for the next page when the last visible item gets within {@code visibleThreshold}
+ * items of the end. Works for LinearLayoutManager and GridLayoutManager (either direction).
+ */
+public abstract class PagingScrollListener extends RecyclerView.OnScrollListener {
+
+    private final LinearLayoutManager layoutManager;
+    private final int visibleThreshold;
+
+    public PagingScrollListener(@NonNull LinearLayoutManager layoutManager, int visibleThreshold) {
+        this.layoutManager = layoutManager;
+        this.visibleThreshold = visibleThreshold;
+    }
+
+    @Override
+    public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+        // Also called with (0, 0) after layout, so a short first page keeps loading
+        int total = layoutManager.getItemCount();
+        int lastVisible = layoutManager.findLastVisibleItemPosition();
+        if (total > 0 && lastVisible >= total - 1 - visibleThreshold) {
+            onLoadMore();
+        }
+    }
+
+    protected abstract void onLoadMore();
+}
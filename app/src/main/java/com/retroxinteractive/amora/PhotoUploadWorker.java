@@ -0,0 +1,357 @@
+package com.retroxinteractive.amora;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.Uri;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.Data;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ServerValue;
+import com.google.firebase.storage.FirebaseStorage;
+import com.google.firebase.storage.StorageMetadata;
+import com.google.firebase.storage.StorageReference;
+import com.google.firebase.storage.UploadTask;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Uploads prepared photos (see {@link ImagePreprocessor}) in the background so a batch
+ * survives the app being backgrounded, killed or losing network.
+ *
+ * Each file's resumable session uri is persisted as soon as Storage hands it out, so a
+ * retry continues from the last uploaded chunk instead of byte 0, and finished files are
+ * remembered so a retry only redoes the ones that failed. Once every file is settled the
+ * URLs are committed in one multi-path update and the local files are deleted.
+ */
+public final class PhotoUploadWorker extends Worker {
+
+    /** Tag on every upload request; ProfileFragment observes it for progress. */
+    public static final String TAG_UPLOAD = "photo_upload";
+
+    public static final String KEY_PROGRESS = "progress";
+    public static final String KEY_UPLOADED = "uploaded";
+    public static final String KEY_FAILED = "failed";
+
+    static final String KEY_UID = "uid";
+    static final String KEY_KIND = "kind";
+    static final String KEY_FILES = "files";
+    static final String KEY_NAMES = "names";
+
+    static final String KIND_PHOTOS = "photos";
+    static final String KIND_PROFILE = "profile";
+
+    /** Enough to keep a cellular link busy without photos starving each other. */
+    static final int MAX_CONCURRENT = 2;
+
+    /** Runs (first + retries) before giving up on files that still fail. */
+    static final int MAX_ATTEMPTS = 5;
+
+    /** How long the final multi-path commit may take before this run retries. */
+    private static final long COMMIT_TIMEOUT_S = 30;
+
+    private static final String TAG = "PhotoUploadWorker";
+    private static final String PREFS = "photo_uploads";
+    private static final String PREF_SESSION = "session:";
+    private static final String PREF_URL = "url:";
+
+    private double[] fractions = new double[0];
+    private int lastPercent = -1;
+
+    public PhotoUploadWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    // Enqueue
+    // ─────────────────────────────────────────────────────────────
+
+    /**
+     * Queues extra photos for user_photos/{uid}/. They never become the main photo: only
+     * profile_images/ objects get profileImageThumbs, so that goes through
+     * {@link #enqueueProfilePhoto}.
+     */
+    public static void enqueuePhotos(@NonNull Context context, @NonNull String uid,
+                                     @NonNull List<File> files) {
+        if (files.isEmpty()) return;
+        WorkManager.getInstance(context).enqueue(request(uid, KIND_PHOTOS, files));
+    }
+
+    /**
+     * Queues a new main photo for profile_images/{uid}/. Requests chain per user, so if the
+     * user picks twice the newer photo is committed last.
+     */
+    public static void enqueueProfilePhoto(@NonNull Context context, @NonNull String uid,
+                                           @NonNull File file) {
+        List<File> files = new ArrayList<>();
+        files.add(file);
+        WorkManager.getInstance(context).enqueueUniqueWork(
+                "profile_photo_" + uid,
+                ExistingWorkPolicy.APPEND_OR_REPLACE,
+                request(uid, KIND_PROFILE, files));
+    }
+
+    private static OneTimeWorkRequest request(String uid, String kind, List<File> files) {
+        String[] paths = new String[files.size()];
+        String[] names = new String[files.size()];
+        DatabaseReference keys = FirebaseDatabase.getInstance().getReference();
+        for (int i = 0; i < paths.length; i++) {
+            paths[i] = files.get(i).getAbsolutePath();
+            // Push keys sort by creation time, so photos/ and photoThumbs/ list in the
+            // order the photos were picked, batch after batch
+            names[i] = keys.push().getKey() + ".jpg";
+        }
+        Data input = new Data.Builder()
+                .putString(KEY_UID, uid)
+                .putString(KEY_KIND, kind)
+                .putStringArray(KEY_FILES, paths)
+                .putStringArray(KEY_NAMES, names)
+                .build();
+        return new OneTimeWorkRequest.Builder(PhotoUploadWorker.class)
+                .setInputData(input)
+                .setConstraints(new Constraints.Builder()
+                        .setRequiredNetworkType(NetworkType.CONNECTED)
+                        .build())
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, 30, TimeUnit.SECONDS)
+                .addTag(TAG_UPLOAD)
+                .build();
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    // Work
+    // ─────────────────────────────────────────────────────────────
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Data input = getInputData();
+        String uid = input.getString(KEY_UID);
+        String kind = input.getString(KEY_KIND);
+        String[] paths = input.getStringArray(KEY_FILES);
+        String[] names = input.getStringArray(KEY_NAMES);
+        if (uid == null || kind == null || paths == null || paths.length == 0) {
+            return Result.failure();
+        }
+        if (names == null || names.length != paths.length) {
+            // Queued by an older version: the files' own names
+            names = new String[paths.length];
+            for (int i = 0; i < paths.length; i++) {
+                names[i] = new File(paths[i]).getName();
+            }
+        }
+        String[] objectNames = names;
+
+        FirebaseUser me = FirebaseAuth.getInstance().getCurrentUser();
+        if (me == null || !uid.equals(me.getUid())) {
+            // Signed out (or someone else signed in) since this was queued
+            cleanUp(paths);
+            return Result.failure();
+        }
+
+        fractions = new double[paths.length];
+        String[] urls = new String[paths.length];
+
+        int retryable = 0;
+        ExecutorService pool = Executors.newFixedThreadPool(MAX_CONCURRENT);
+        try {
+            List<Future<String>> futures = new ArrayList<>(paths.length);
+            for (int i = 0; i < paths.length; i++) {
+                int index = i;
+                futures.add(pool.submit(() -> uploadOne(uid, kind, paths[index], objectNames[index], index)));
+            }
+            for (int i = 0; i < paths.length; i++) {
+                try {
+                    urls[i] = futures.get(i).get();
+                } catch (Exception e) {
+                    Log.w(TAG, "Upload failed: " + paths[i], e);
+                    retryable++;
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        if (isStopped()) {
+            // Interrupted (e.g. the network constraint went away): keep files, sessions and
+            // finished URLs for the rescheduled run; nothing is committed or cleaned up
+            return Result.retry();
+        }
+
+        int failed = 0;
+        for (String url : urls) {
+            if (url == null) failed++;
+        }
+        boolean lastAttempt = getRunAttemptCount() + 1 >= MAX_ATTEMPTS;
+        if (retryable > 0 && !lastAttempt) {
+            // Finished files are remembered; the retry only redoes the rest
+            return Result.retry();
+        }
+
+        int uploaded = paths.length - failed;
+        if (uploaded > 0) {
+            try {
+                Tasks.await(FirebaseDatabase.getInstance().getReference()
+                                .updateChildren(buildCommit(uid, kind, objectNames, urls)),
+                        COMMIT_TIMEOUT_S, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                Log.w(TAG, "Commit failed", e);
+                return lastAttempt ? finish(paths, 0, paths.length) : Result.retry();
+            }
+        }
+        return finish(paths, uploaded, failed);
+    }
+
+    /**
+     * Uploads (or resumes) one file as {@code name} and returns its download URL. Runs on
+     * the pool.
+     */
+    private String uploadOne(String uid, String kind, String path, String name, int index)
+            throws Exception {
+        SharedPreferences prefs = prefs(getApplicationContext());
+        String done = prefs.getString(PREF_URL + path, null);
+        if (done != null) {
+            setFraction(index, 1);
+            return done;
+        }
+
+        File file = new File(path);
+        if (!file.isFile()) return null; // cleared from under us; nothing to retry
+
+        // Unique names: a path never changes content, which FirebaseStorageUrl relies on
+        StorageReference ref = FirebaseStorage.getInstance()
+                .getReference(KIND_PROFILE.equals(kind) ? "profile_images" : "user_photos")
+                .child(uid).child(name);
+        StorageMetadata metadata = path.endsWith(".jpg")
+                ? new StorageMetadata.Builder().setContentType("image/jpeg").build()
+                : new StorageMetadata.Builder().build();
+
+        String session = prefs.getString(PREF_SESSION + path, null);
+        Uri fileUri = Uri.fromFile(file);
+        UploadTask upload = session != null
+                ? ref.putFile(fileUri, metadata, Uri.parse(session))
+                : ref.putFile(fileUri, metadata);
+
+        String[] savedSession = {session};
+        upload.addOnProgressListener(Runnable::run, snapshot -> {
+            Uri sessionUri = snapshot.getUploadSessionUri();
+            if (sessionUri != null && !sessionUri.toString().equals(savedSession[0])) {
+                savedSession[0] = sessionUri.toString();
+                prefs.edit().putString(PREF_SESSION + path, savedSession[0]).apply();
+            }
+            long total = snapshot.getTotalByteCount();
+            if (total > 0) {
+                setFraction(index, (double) snapshot.getBytesTransferred() / total);
+            }
+        });
+
+        try {
+            Tasks.await(upload);
+        } catch (Exception e) {
+            if (session != null) {
+                // The stored session may have expired; start over on the next attempt
+                prefs.edit().remove(PREF_SESSION + path).apply();
+            }
+            throw e;
+        }
+
+        String url = Tasks.await(ref.getDownloadUrl()).toString();
+        prefs.edit()
+                .putString(PREF_URL + path, url)
+                .remove(PREF_SESSION + path)
+                .apply();
+        setFraction(index, 1);
+        return url;
+    }
+
+    /**
+     * One multi-path write for the whole batch, in the order the photos were picked.
+     * Photo keys come from the object names (fixed at enqueue time), so committing twice
+     * after a crash is harmless and matches the key the thumbnail function writes under
+     * photoThumbs.
+     */
+    @NonNull
+    static Map<String, Object> buildCommit(@NonNull String uid, @NonNull String kind,
+                                           @NonNull String[] names, @NonNull String[] urls) {
+        Map<String, Object> update = new HashMap<>();
+        for (int i = 0; i < names.length; i++) {
+            String url = urls[i];
+            if (url == null) continue;
+            if (KIND_PROFILE.equals(kind)) {
+                // The new main photo (and the card's). The old photo's thumbnails go with
+                // it; the function publishes the new ones
+                ProfileCards.putFanOut(update, uid, "profileImageUrl", url);
+                ProfileCards.putFanOut(update, uid, "profileImageThumbs", null);
+            } else {
+                update.put("users/" + uid + "/photos/" + photoKey(names[i]), url);
+            }
+        }
+        // Every profile write moves updatedAt, which delta sync keys on
+        ProfileCards.putFanOut(update, uid, "updatedAt", ServerValue.TIMESTAMP);
+        return update;
+    }
+
+    /** Same rule as photoKey() in functions/thumbnails.js. */
+    @NonNull
+    static String photoKey(@NonNull String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        String name = dot > 0 ? fileName.substring(0, dot) : fileName;
+        return name.replaceAll("[.#$\\[\\]/]", "_");
+    }
+
+    private Result finish(String[] paths, int uploaded, int failed) {
+        cleanUp(paths);
+        return Result.success(new Data.Builder()
+                .putInt(KEY_UPLOADED, uploaded)
+                .putInt(KEY_FAILED, failed)
+                .build());
+    }
+
+    private void cleanUp(String[] paths) {
+        SharedPreferences.Editor editor = prefs(getApplicationContext()).edit();
+        for (String path : paths) {
+            editor.remove(PREF_SESSION + path).remove(PREF_URL + path);
+            if (!new File(path).delete()) {
+                Log.d(TAG, "Nothing to delete at " + path);
+            }
+        }
+        editor.apply();
+    }
+
+    private synchronized void setFraction(int index, double fraction) {
+        fractions[index] = fraction;
+        double sum = 0;
+        for (double f : fractions) sum += f;
+        int percent = (int) (100 * sum / fractions.length);
+        if (percent != lastPercent) {
+            lastPercent = percent;
+            setProgressAsync(new Data.Builder().putInt(KEY_PROGRESS, percent).build());
+        }
+    }
+
+    @NonNull
+    private static SharedPreferences prefs(@NonNull Context context) {
+        return context.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+    }
+}
@@ -0,0 +1,294 @@
+package com.retroxinteractive.amora;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * On-device copy of the last published feed, so Home / Discover can draw cards on a
+ * cold start before Firebase has answered.
+ *
+ * Next to the rows it keeps a high-water mark (the newest {@code updatedAt} among them),
+ * so the next session only asks Firebase for cards changed since then.
+ *
+ * The cache is disposable: a schema change simply drops it, rows older than
+ * {@link #MAX_AGE_MS} are never shown, and each account keeps at most
+ * {@link #MAX_PROFILES} profiles (a key-order prefix, so paging can resume after it).
+ * Call from a background thread.
+ */
+public final class ProfileCache extends SQLiteOpenHelper {
+
+    private static final String TAG = "ProfileCache";
+
+    private static final String DB_NAME = "profile_cache.db";
+    // Bump whenever the columns or what they mean change; old caches are dropped
+    private static final int DB_VERSION = 3;
+
+    static final int MAX_PROFILES = 300;
+    static final long MAX_AGE_MS = 7L * 24 * 60 * 60 * 1000;
+
+    private static final String TABLE = "profiles";
+    private static final String SYNC_TABLE = "sync_state";
+
+    /** Cached profiles (uid order) plus the updatedAt high-water mark they were synced to. */
+    public static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(Collections.emptyList(), 0);
+
+        @NonNull public final List<UserProfile> profiles;
+        public final long mark;
+
+        Snapshot(@NonNull List<UserProfile> profiles, long mark) {
+            this.profiles = profiles;
+            this.mark = mark;
+        }
+    }
+
+    private static ProfileCache instance;
+
+    public static synchronized ProfileCache getInstance(@NonNull Context context) {
+        if (instance == null) {
+            instance = new ProfileCache(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private ProfileCache(@NonNull Context context) {
+        super(context, DB_NAME, null, DB_VERSION);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE + " ("
+                + "owner_uid TEXT NOT NULL, "
+                + "uid TEXT NOT NULL, "
+                + "name TEXT, age TEXT, bio TEXT, address TEXT, photo_url TEXT, "
+                + "photo_thumbs TEXT, "
+                + "verified INTEGER NOT NULL DEFAULT 0, "
+                + "distance_km REAL, match_percent INTEGER, "
+                + "interests TEXT, "
+                + "latitude REAL, longitude REAL, "
+                + "updated_at INTEGER, "
+                + "cached_at INTEGER NOT NULL, "
+                + "PRIMARY KEY (owner_uid, uid))");
+        db.execSQL("CREATE TABLE " + SYNC_TABLE + " ("
+                + "owner_uid TEXT PRIMARY KEY, "
+                + "mark INTEGER NOT NULL, "
+                + "cached_at INTEGER NOT NULL)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        recreate(db);
+    }
+
+    @Override
+    public void onDowngrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        recreate(db);
+    }
+
+    private void recreate(SQLiteDatabase db) {
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE);
+        db.execSQL("DROP TABLE IF EXISTS " + SYNC_TABLE);
+        onCreate(db);
+    }
+
+    /**
+     * What is cached for {@code ownerUid}, or {@link Snapshot#EMPTY} if nothing fresh is.
+     */
+    @NonNull
+    public Snapshot load(@NonNull String ownerUid) {
+        String[] args = {ownerUid, String.valueOf(System.currentTimeMillis() - MAX_AGE_MS)};
+        SQLiteDatabase db;
+        long mark;
+        List<UserProfile> result = new ArrayList<>();
+
+        try {
+            db = getReadableDatabase();
+            try (Cursor c = db.query(SYNC_TABLE, new String[]{"mark"},
+                    "owner_uid = ? AND cached_at >= ?", args, null, null, null)) {
+                if (!c.moveToFirst()) return Snapshot.EMPTY;
+                mark = c.getLong(0);
+            }
+            try (Cursor c = db.query(TABLE, null,
+                    "owner_uid = ? AND cached_at >= ?", args, null, null, "uid")) {
+                while (c.moveToNext()) {
+                    result.add(readRow(c));
+                }
+            }
+        } catch (RuntimeException e) {
+            // A broken cache must never stop the feed from loading
+            Log.w(TAG, "Failed to read profile cache", e);
+            return Snapshot.EMPTY;
+        }
+        return new Snapshot(result, mark);
+    }
+
+    /**
+     * Replaces what is cached for {@code ownerUid} with {@code profiles} (key order) up to
+     * {@code lastPagedKey}, capped at {@link #MAX_PROFILES}. Users past the paging cursor
+     * (e.g. seen only through delta sync) are left out so the cache stays a contiguous
+     * prefix. Also records the high-water mark and evicts stale rows of other accounts.
+     */
+    public void save(@NonNull String ownerUid, @NonNull List<UserProfile> profiles,
+                     @NonNull String lastPagedKey) {
+        List<UserProfile> kept = new ArrayList<>();
+        for (UserProfile p : profiles) {
+            if (kept.size() >= MAX_PROFILES) break;
+            if (p.getUid() == null || p.getUid().compareTo(lastPagedKey) > 0) continue;
+            kept.add(p);
+        }
+        long now = System.currentTimeMillis();
+
+        long mark = 0;
+        for (UserProfile p : kept) {
+            if (p.getUpdatedAt() != null) mark = Math.max(mark, p.getUpdatedAt());
+        }
+
+        SQLiteDatabase db;
+        try {
+            db = getWritableDatabase();
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Profile cache unavailable", e);
+            return;
+        }
+
+        db.beginTransaction();
+        try {
+            String[] evict = {ownerUid, String.valueOf(now - MAX_AGE_MS)};
+            db.delete(TABLE, "owner_uid = ? OR cached_at < ?", evict);
+            db.delete(SYNC_TABLE, "owner_uid = ? OR cached_at < ?", evict);
+            for (UserProfile p : kept) {
+                if (p.getUid() == null) continue;
+                db.insert(TABLE, null, toRow(ownerUid, p, now));
+            }
+
+            ContentValues sync = new ContentValues();
+            sync.put("owner_uid", ownerUid);
+            sync.put("mark", mark);
+            sync.put("cached_at", now);
+            db.insert(SYNC_TABLE, null, sync);
+            db.setTransactionSuccessful();
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Failed to write profile cache", e);
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /** Forgets everything, e.g. on logout. */
+    public void clearAll() {
+        try {
+            SQLiteDatabase db = getWritableDatabase();
+            db.delete(TABLE, null, null);
+            db.delete(SYNC_TABLE, null, null);
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Failed to clear profile cache", e);
+        }
+    }
+
+    // --- Row mapping ---
+
+    private static ContentValues toRow(@NonNull String ownerUid, @NonNull UserProfile p, long now) {
+        ContentValues v = new ContentValues();
+        v.put("owner_uid", ownerUid);
+        v.put("uid", p.getUid());
+        v.put("name", p.getName());
+        v.put("age", p.getAge());
+        v.put("bio", p.getBio());
+        v.put("address", p.getAddress());
+        v.put("photo_url", p.getPhotoUrl());
+        v.put("photo_thumbs", p.getPhotoThumbs() != null ? new JSONObject(p.getPhotoThumbs()).toString() : null);
+        v.put("verified", p.getVerified() ? 1 : 0);
+        v.put("distance_km", p.getDistanceKm());
+        v.put("match_percent", p.getMatchPercent());
+        v.put("interests", p.getInterests() != null ? new JSONArray(p.getInterests()).toString() : null);
+        v.put("latitude", p.getLatitude());
+        v.put("longitude", p.getLongitude());
+        v.put("updated_at", p.getUpdatedAt());
+        v.put("cached_at", now);
+        return v;
+    }
+
+    @NonNull
+    private static UserProfile readRow(@NonNull Cursor c) {
+        UserProfile p = new UserProfile();
+        p.setUid(c.getString(c.getColumnIndexOrThrow("uid")));
+        p.setName(c.getString(c.getColumnIndexOrThrow("name")));
+        p.setAge(c.getString(c.getColumnIndexOrThrow("age")));
+        p.setBio(c.getString(c.getColumnIndexOrThrow("bio")));
+        p.setAddress(c.getString(c.getColumnIndexOrThrow("address")));
+        p.setPhotoUrl(c.getString(c.getColumnIndexOrThrow("photo_url")));
+        p.setPhotoThumbs(parseThumbs(c.getString(c.getColumnIndexOrThrow("photo_thumbs"))));
+        p.setVerified(c.getInt(c.getColumnIndexOrThrow("verified")) != 0);
+        p.setDistanceKm(getDouble(c, "distance_km"));
+        Long match = getLong(c, "match_percent");
+        p.setMatchPercent(match != null ? match.intValue() : null);
+        p.setInterestsIndexed(parseInterests(c.getString(c.getColumnIndexOrThrow("interests"))));
+        p.setLatitude(getDouble(c, "latitude"));
+        p.setLongitude(getDouble(c, "longitude"));
+        p.setUpdatedAt(getLong(c, "updated_at"));
+        return p;
+    }
+
+    @Nullable
+    private static Double getDouble(@NonNull Cursor c, @NonNull String column) {
+        int i = c.getColumnIndexOrThrow(column);
+        return c.isNull(i) ? null : c.getDouble(i);
+    }
+
+    @Nullable
+    private static Long getLong(@NonNull Cursor c, @NonNull String column) {
+        int i = c.getColumnIndexOrThrow(column);
+        return c.isNull(i) ? null : c.getLong(i);
+    }
+
+    @Nullable
+    private static Map<String, String> parseThumbs(@Nullable String json) {
+        if (json == null) return null;
+        Map<String, String> thumbs = new HashMap<>();
+        try {
+            JSONObject object = new JSONObject(json);
+            Iterator<String> keys = object.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                thumbs.put(key, object.getString(key));
+            }
+        } catch (JSONException e) {
+            Log.w(TAG, "Bad cached thumbnails", e);
+            return null;
+        }
+        return thumbs;
+    }
+
+    @NonNull
+    private static List<String> parseInterests(@Nullable String json) {
+        List<String> interests = new ArrayList<>();
+        if (json == null) return interests;
+        try {
+            JSONArray array = new JSONArray(json);
+            for (int i = 0; i < array.length(); i++) {
+                interests.add(array.getString(i));
+            }
+        } catch (JSONException e) {
+            Log.w(TAG, "Bad cached interests", e);
+        }
+        return interests;
+    }
+}
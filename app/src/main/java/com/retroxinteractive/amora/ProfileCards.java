@@ -0,0 +1,82 @@
+package com.retroxinteractive.amora;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.ServerValue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * /profileCards/{uid}: the slice of /users/{uid} a feed card needs (no fcmToken, photo
+ * list, address, ...). Feed queries read only this node.
+ *
+ * Kept in sync by the writers of those fields with multi-path updates, so a user
+ * record and its card always change together.
+ */
+public final class ProfileCards {
+
+    public static final String NODE = "profileCards";
+
+    /**
+     * /deletedCards/{uid} = server time the card was deleted, written by the functions.
+     * Lets delta sync drop users deleted while the app was closed. Needs
+     * {@code ".indexOn": ".value"}.
+     */
+    public static final String TOMBSTONES = "deletedCards";
+
+    /** Fields copied from /users/{uid}; same names, so ProfileRepository parses both alike. */
+    static final List<String> FIELDS = Arrays.asList(
+            "name", "age", "bio", "profileImageUrl", "profileImageThumbs", "verified", "interests",
+            "latitude", "longitude", "geohash", "profileCompleted", "updatedAt");
+
+    private ProfileCards() { }
+
+    /**
+     * Adds {@code users/{uid}/field} and, for card fields, {@code profileCards/{uid}/field}
+     * entries to a root-level multi-path update.
+     */
+    public static void putFanOut(@NonNull Map<String, Object> rootUpdate, @NonNull String uid,
+                                 @NonNull String field, @Nullable Object value) {
+        rootUpdate.put("users/" + uid + "/" + field, value);
+        if (FIELDS.contains(field)) {
+            rootUpdate.put(NODE + "/" + uid + "/" + field, value);
+        }
+    }
+
+    /** Same as {@link #putFanOut} for every entry of a users/{uid} field map. */
+    public static Map<String, Object> fanOut(@NonNull String uid, @NonNull Map<String, Object> userFields) {
+        Map<String, Object> rootUpdate = new HashMap<>();
+        for (Map.Entry<String, Object> e : userFields.entrySet()) {
+            putFanOut(rootUpdate, uid, e.getKey(), e.getValue());
+        }
+        return rootUpdate;
+    }
+
+    /**
+     * Root-level update that repairs {@code card} from a full /users/{uid} snapshot, e.g.
+     * to backfill users saved before cards existed. Only fields that differ are written,
+     * plus a fresh {@code updatedAt} so delta sync picks the repair up; empty when the
+     * card is already in sync, so nothing is written (or re-downloaded by others).
+     */
+    @NonNull
+    static Map<String, Object> backfill(@NonNull DataSnapshot user, @NonNull DataSnapshot card) {
+        String uid = user.getKey();
+        Map<String, Object> rootUpdate = new HashMap<>();
+        for (String field : FIELDS) {
+            Object value = user.child(field).getValue();
+            if (!Objects.equals(value, card.child(field).getValue())) {
+                rootUpdate.put(NODE + "/" + uid + "/" + field, value);
+            }
+        }
+        if (!rootUpdate.isEmpty() || !user.hasChild("updatedAt")) {
+            putFanOut(rootUpdate, uid, "updatedAt", ServerValue.TIMESTAMP);
+        }
+        return rootUpdate;
+    }
+}
@@ -32,9 +32,8 @@ import com.google.firebase.database.DataSnapshot;
 import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ServerValue;
 import com.google.firebase.database.ValueEventListener;
-import com.google.firebase.storage.FirebaseStorage;
-import com.google.firebase.storage.StorageReference;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -52,7 +51,6 @@ public class ProfileDetailsActivity extends AppCompatActivity {
     private FirebaseAuth mAuth;
     private DatabaseReference usersRef;
 
-    private StorageReference storageRef;
     private Uri selectedImageUri = null;
     private String existingImageUrl = null;
 
@@ -78,7 +76,6 @@ public class ProfileDetailsActivity extends AppCompatActivity {
 
         mAuth = FirebaseAuth.getInstance();
         usersRef = FirebaseDatabase.getInstance().getReference("users");
-        storageRef = FirebaseStorage.getInstance().getReference().child("profile_images");
 
         fusedLocationClient = LocationServices.getFusedLocationProviderClient(this);
 
@@ -273,7 +270,9 @@ public class ProfileDetailsActivity extends AppCompatActivity {
         if (selectedImageUri != null) {
             uploadImageAndSaveProfile(user, name, age, bio, address, interests, lat, lng);
         } else {
-            writeProfileToDatabase(user, name, age, bio, address, interests, lat, lng, existingImageUrl);
+            // Keep the current photo (and its thumbnails) as they are
+            writeProfileToDatabase(user, name, age, bio, address, interests, lat, lng,
+                    existingImageUrl == null || existingImageUrl.isEmpty() ? "" : null);
         }
     }
 
@@ -287,26 +286,25 @@ public class ProfileDetailsActivity extends AppCompatActivity {
                                            double lat,
                                            double lng) {
 
-        StorageReference userImageRef = storageRef
-                .child(user.getUid())
-                .child("profile.jpg");
-
-        userImageRef.putFile(selectedImageUri)
-                .addOnSuccessListener(taskSnapshot ->
-                        userImageRef.getDownloadUrl().addOnSuccessListener(uri ->
-                                writeProfileToDatabase(
-                                        user, name, age, bio, address,
-                                        interests, lat, lng, uri.toString()
-                                )))
-                .addOnFailureListener(e -> {
-                    btnSave.setEnabled(true);
-                    Toast.makeText(this,
-                            "Image upload failed: " + e.getMessage(),
-                            Toast.LENGTH_LONG).show();
-                });
+        // Downscale into app storage, hand the upload to WorkManager so it survives this
+        // screen (and the process) going away, and save the text fields right now
+        ImagePreprocessor.prepareAsync(this, selectedImageUri, file -> {
+            if (file == null) {
+                btnSave.setEnabled(true);
+                Toast.makeText(this,
+                        "Could not read the selected image",
+                        Toast.LENGTH_LONG).show();
+                return;
+            }
+            // The worker commits the new URL; writing the old one here could overwrite it
+            PhotoUploadWorker.enqueueProfilePhoto(this, user.getUid(), file);
+            writeProfileToDatabase(user, name, age, bio, address,
+                    interests, lat, lng, null);
+        });
     }
 
 
+    // imageUrl == null leaves profileImageUrl / profileImageThumbs untouched
     private void writeProfileToDatabase(FirebaseUser user,
                                         String name,
                                         String age,
@@ -324,12 +322,19 @@ public class ProfileDetailsActivity extends AppCompatActivity {
         profileMap.put("bio", bio);
         profileMap.put("interests", interests);
         profileMap.put("profileCompleted", true);
-        profileMap.put("profileImageUrl", imageUrl == null ? "" : imageUrl);
+        if (imageUrl != null) {
+            // A changed photo never keeps the previous photo's thumbnails
+            profileMap.put("profileImageUrl", imageUrl);
+            profileMap.put("profileImageThumbs", null);
+        }
         profileMap.put("latitude", latitude);
         profileMap.put("longitude", longitude);
+        profileMap.put("geohash", GeoHash.encode(latitude, longitude, GeoHash.STORED_PRECISION));
+        profileMap.put("updatedAt", ServerValue.TIMESTAMP);
 
-        usersRef.child(user.getUid())
-                .updateChildren(profileMap)
+        // One atomic write to the user record and its feed card
+        FirebaseDatabase.getInstance().getReference()
+                .updateChildren(ProfileCards.fanOut(user.getUid(), profileMap))
                 .addOnSuccessListener(unused -> {
                     Toast.makeText(this,
                             "Profile saved!", Toast.LENGTH_SHORT).show();
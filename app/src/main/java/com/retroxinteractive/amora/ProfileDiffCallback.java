@@ -0,0 +1,56 @@
+package com.retroxinteractive.amora;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.DiffUtil;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * DiffUtil callback for profile cards, keyed by uid.
+ *
+ * When only distance / match % changed, {@link #PAYLOAD_SCORES} is returned so adapters
+ * can update those labels without rebinding the card (and restarting its image load).
+ */
+public class ProfileDiffCallback extends DiffUtil.ItemCallback<UserProfile> {
+
+    public static final Object PAYLOAD_SCORES = new Object();
+
+    @Override
+    public boolean areItemsTheSame(@NonNull UserProfile oldItem, @NonNull UserProfile newItem) {
+        return Objects.equals(oldItem.getUid(), newItem.getUid());
+    }
+
+    @Override
+    public boolean areContentsTheSame(@NonNull UserProfile oldItem, @NonNull UserProfile newItem) {
+        return oldItem == newItem || oldItem.hasSameContent(newItem);
+    }
+
+    @Nullable
+    @Override
+    public Object getChangePayload(@NonNull UserProfile oldItem, @NonNull UserProfile newItem) {
+        // Put the old scores on a copy of the new item: if that matches, only scores moved
+        UserProfile withOldScores = newItem.copy();
+        withOldScores.setDistanceKm(oldItem.getDistanceKm());
+        withOldScores.setMatchPercent(oldItem.getMatchPercent());
+        return oldItem.hasSameContent(withOldScores) ? PAYLOAD_SCORES : null;
+    }
+
+    /**
+     * Hands out stable RecyclerView item ids per uid (no hashCode collisions).
+     */
+    public static class StableIds {
+        private final Map<String, Long> ids = new HashMap<>();
+
+        public long idFor(@Nullable String uid) {
+            Long id = ids.get(uid);
+            if (id == null) {
+                id = (long) ids.size();
+                ids.put(uid, id);
+            }
+            return id;
+        }
+    }
+}
@@ -13,7 +13,7 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ImageButton;
 import android.widget.ImageView;
-import android.widget.LinearLayout;
+import android.widget.ProgressBar;
 import android.widget.TextView;
 import android.widget.Toast;
 
@@ -23,6 +23,10 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.appcompat.widget.PopupMenu;
 import androidx.fragment.app.Fragment;
+import androidx.recyclerview.widget.GridLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.work.WorkInfo;
+import androidx.work.WorkManager;
 
 import com.bumptech.glide.Glide;
 import com.google.firebase.auth.FirebaseAuth;
@@ -32,20 +36,26 @@ import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
 import com.google.firebase.database.ValueEventListener;
-import com.google.firebase.storage.FirebaseStorage;
-import com.google.firebase.storage.StorageReference;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
 
 public class ProfileFragment extends Fragment {
 
     private static final String ARG_FROM_MAIN_PROFILE = "from_main_profile";
     private static final String ARG_USER_ID = "user_id";
 
+    // Photo grid cell height and gap (cell height matches item_profile_photo)
+    private static final int PHOTO_CELL_DP = 140;
+    private static final int PHOTO_GAP_DP = 8;
+
     // true = opened from MainActivity (own profile)
     private boolean openedFromMainProfile = false;
     // uid of user whose profile we are viewing (null = current user)
@@ -55,7 +65,9 @@ public class ProfileFragment extends Fragment {
     private TextView tvBio;
     private TextView tvDistance;
     private ImageView imgProfilePhoto;
-    private LinearLayout photosContainer;
+    private RecyclerView photosGrid;
+    private ProfilePhotosAdapter photosAdapter;
+    private ProgressBar uploadProgress;
 
     // interest pills
     private TextView tvInterest1, tvInterest2, tvInterest3, tvInterest4, tvInterest5;
@@ -67,6 +79,7 @@ public class ProfileFragment extends Fragment {
     private String displayedUserPhotoUrl;
 
     private ActivityResultLauncher<String> pickImagesLauncher;
+    private final Set<UUID> watchedUploads = new HashSet<>();
 
     public ProfileFragment() {
         // Required empty public constructor
@@ -115,6 +128,9 @@ public class ProfileFragment extends Fragment {
     @Override
     public void onDestroyView() {
         super.onDestroyView();
+        uploadProgress = null;
+        photosGrid = null;
+        photosAdapter = null;
 
         // If this was an "other user's" profile, restore the bottom nav
         if (!openedFromMainProfile && getActivity() instanceof MainActivity) {
@@ -139,7 +155,14 @@ public class ProfileFragment extends Fragment {
         View bottomActionBar = view.findViewById(R.id.bottom_bar);
         ImageView btnAddPhoto = view.findViewById(R.id.btn_add_photo);
 
-        photosContainer = view.findViewById(R.id.photos_container);
+        photosGrid = view.findViewById(R.id.photos_grid);
+        photosGrid.setLayoutManager(
+                new GridLayoutManager(requireContext(), ProfilePhotosAdapter.SPAN_COUNT));
+        photosGrid.addItemDecoration(new ProfilePhotosAdapter.GridSpacing(dpToPx(PHOTO_GAP_DP)));
+        photosAdapter = new ProfilePhotosAdapter(this);
+        photosGrid.setAdapter(photosAdapter);
+        ImagePreloading.attach(photosGrid, Glide.with(this), photosAdapter, photosAdapter.preloadSizes);
+        uploadProgress = view.findViewById(R.id.photos_upload_progress);
 
         tvInterest1 = view.findViewById(R.id.tv_interest_actress);
         tvInterest2 = view.findViewById(R.id.tv_interest_modeling);
@@ -204,6 +227,14 @@ public class ProfileFragment extends Fragment {
         return view;
     }
 
+    @Override
+    public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
+        super.onViewCreated(view, savedInstanceState);
+        if (openedFromMainProfile) {
+            observeUploads();
+        }
+    }
+
     private void openChatForCurrentProfile() {
         if (!(getActivity() instanceof MainActivity)) return;
 
@@ -290,6 +321,9 @@ public class ProfileFragment extends Fragment {
                 return true;
             } else if ("Logout".contentEquals(title)) {
                 FirebaseAuth.getInstance().signOut();
+                ProfileRepository.getInstance().clear();
+                MessageStore store = MessageStore.getInstance(requireContext());
+                AppExecutors.io().execute(store::clearAll);
                 if (getActivity() != null) {
                     Intent intent = new Intent(getActivity(), OnboardingActivity.class);
                     intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
@@ -362,7 +396,13 @@ public class ProfileFragment extends Fragment {
                     Double otherLatObj = snapshot.child("latitude").getValue(Double.class);
                     Double otherLngObj = snapshot.child("longitude").getValue(Double.class);
 
-                    if (otherLatObj != null && otherLngObj != null) {
+                    UserProfile me = ProfileRepository.getInstance().getMe();
+
+                    if (otherLatObj != null && otherLngObj != null
+                            && me != null && me.getLatitude() != null && me.getLongitude() != null) {
+                        // Shared repository already holds my own record → no extra read
+                        showDistance(me.getLatitude(), me.getLongitude(), otherLatObj, otherLngObj);
+                    } else if (otherLatObj != null && otherLngObj != null) {
                         DatabaseReference myRef = FirebaseDatabase.getInstance()
                                 .getReference("users")
                                 .child(myUid);
@@ -373,16 +413,8 @@ public class ProfileFragment extends Fragment {
                                 Double myLatObj = meSnap.child("latitude").getValue(Double.class);
                                 Double myLngObj = meSnap.child("longitude").getValue(Double.class);
 
-                                if (myLatObj != null && myLngObj != null && tvDistance != null) {
-                                    double distanceKm = calculateDistanceKm(
-                                            myLatObj,
-                                            myLngObj,
-                                            otherLatObj,
-                                            otherLngObj
-                                    );
-                                    tvDistance.setText(
-                                            String.format(Locale.getDefault(), "%.1f km", distanceKm)
-                                    );
+                                if (myLatObj != null && myLngObj != null) {
+                                    showDistance(myLatObj, myLngObj, otherLatObj, otherLngObj);
                                 }
                             }
 
@@ -405,17 +437,24 @@ public class ProfileFragment extends Fragment {
                 }
                 applyInterestsToViews(interests);
 
-                // extra photos
-                List<String> photos = new ArrayList<>();
+                // main photo first, then extra photos, each with its thumbnails (if made yet)
+                List<ProfilePhotosAdapter.Photo> photos = new ArrayList<>();
+                if (!TextUtils.isEmpty(profileImageUrl)) {
+                    photos.add(new ProfilePhotosAdapter.Photo("profile", profileImageUrl,
+                            ProfileRepository.parseThumbs(snapshot.child("profileImageThumbs"))));
+                }
                 DataSnapshot photosSnap = snapshot.child("photos");
+                DataSnapshot thumbsSnap = snapshot.child("photoThumbs");
                 for (DataSnapshot child : photosSnap.getChildren()) {
                     String url = child.getValue(String.class);
-                    if (!TextUtils.isEmpty(url)) {
-                        photos.add(url);
+                    String key = child.getKey();
+                    if (!TextUtils.isEmpty(url) && key != null) {
+                        photos.add(new ProfilePhotosAdapter.Photo(key, url,
+                                ProfileRepository.parseThumbs(thumbsSnap.child(key))));
                     }
                 }
 
-                applyPhotosToViews(profileImageUrl, photos);
+                applyPhotosToViews(photos);
             }
 
             @Override
@@ -447,79 +486,25 @@ public class ProfileFragment extends Fragment {
     }
 
     /**
-     * Creates rows of 2 images each and fills them with all available photo URLs.
-     * First we include profileImageUrl (if present), then all extra photos.
+     * Shows profileImageUrl (if present) followed by the extra photos in the recycled grid.
+     * The grid is as tall as its rows but never taller than the visible area, so a long
+     * gallery scrolls inside its own viewport and only binds the cells on screen.
      */
-    private void applyPhotosToViews(@Nullable String profileImageUrl,
-                                    @NonNull List<String> photos) {
-        if (photosContainer == null || getContext() == null) return;
+    private void applyPhotosToViews(@NonNull List<ProfilePhotosAdapter.Photo> photos) {
+        if (photosGrid == null || photosAdapter == null || getView() == null) return;
 
-        List<String> all = new ArrayList<>();
-        if (!TextUtils.isEmpty(profileImageUrl)) {
-            all.add(profileImageUrl);
-        }
-        all.addAll(photos);
-
-        photosContainer.removeAllViews();
-        if (all.isEmpty()) return;
-
-        Context ctx = getContext();
-        int imageHeight = dpToPx(140);
-        int imageMargin = dpToPx(8);
-
-        for (int i = 0; i < all.size(); i += 2) {
-            LinearLayout row = new LinearLayout(ctx);
-            row.setOrientation(LinearLayout.HORIZONTAL);
-            LinearLayout.LayoutParams rowParams =
-                    new LinearLayout.LayoutParams(
-                            ViewGroup.LayoutParams.MATCH_PARENT,
-                            ViewGroup.LayoutParams.WRAP_CONTENT
-                    );
-            if (i > 0) {
-                rowParams.topMargin = imageMargin;
-            }
-            row.setLayoutParams(rowParams);
-
-            // first image in row
-            String url1 = all.get(i);
-            ImageView iv1 = createPhotoImageView(ctx, imageHeight, imageMargin, true);
-            Glide.with(this).load(url1).centerCrop().into(iv1);
-            row.addView(iv1);
-
-            // second image in row (if exists)
-            if (i + 1 < all.size()) {
-                String url2 = all.get(i + 1);
-                ImageView iv2 = createPhotoImageView(ctx, imageHeight, imageMargin, false);
-                Glide.with(this).load(url2).centerCrop().into(iv2);
-                row.addView(iv2);
-            } else {
-                // spacer for alignment
-                View spacer = new View(ctx);
-                LinearLayout.LayoutParams spacerParams =
-                        new LinearLayout.LayoutParams(0, imageHeight, 1f);
-                spacerParams.leftMargin = imageMargin;
-                spacer.setLayoutParams(spacerParams);
-                row.addView(spacer);
-            }
+        photosAdapter.submitList(photos);
 
-            photosContainer.addView(row);
-        }
-    }
+        int rows = (photos.size() + ProfilePhotosAdapter.SPAN_COUNT - 1) / ProfilePhotosAdapter.SPAN_COUNT;
+        int contentHeight = rows == 0 ? 0 : rows * dpToPx(PHOTO_CELL_DP) + (rows - 1) * dpToPx(PHOTO_GAP_DP);
+        View scroll = getView().findViewById(R.id.details_scroll);
+        int viewport = scroll != null && scroll.getHeight() > 0
+                ? scroll.getHeight()
+                : getResources().getDisplayMetrics().heightPixels;
 
-    private ImageView createPhotoImageView(Context ctx, int heightPx,
-                                           int marginPx, boolean isLeft) {
-        ImageView iv = new ImageView(ctx);
-        LinearLayout.LayoutParams lp =
-                new LinearLayout.LayoutParams(0, heightPx, 1f);
-        if (isLeft) {
-            lp.rightMargin = marginPx;
-        } else {
-            lp.leftMargin = marginPx;
-        }
-        iv.setLayoutParams(lp);
-        iv.setScaleType(ImageView.ScaleType.CENTER_CROP);
-        iv.setBackgroundResource(R.drawable.profile_bg);
-        return iv;
+        ViewGroup.LayoutParams lp = photosGrid.getLayoutParams();
+        lp.height = Math.min(contentHeight, viewport);
+        photosGrid.setLayoutParams(lp);
     }
 
     // ------------------ UPLOAD PHOTOS (only for own profile) ------------------
@@ -527,50 +512,102 @@ public class ProfileFragment extends Fragment {
         FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
         if (user == null || getContext() == null) return;
 
+        Context appContext = requireContext().getApplicationContext();
         String uid = user.getUid();
-        DatabaseReference userRefLocal =
-                FirebaseDatabase.getInstance().getReference("users").child(uid);
-
-        StorageReference storageRoot =
-                FirebaseStorage.getInstance().getReference("user_photos").child(uid);
-
-        for (Uri uri : uris) {
-            if (uri == null) continue;
-
-            String fileName = System.currentTimeMillis() + "_" +
-                    (uri.getLastPathSegment() != null ? uri.getLastPathSegment() : "photo.jpg");
-
-            StorageReference photoRef = storageRoot.child(fileName);
-
-            photoRef.putFile(uri)
-                    .addOnSuccessListener(taskSnapshot ->
-                            photoRef.getDownloadUrl().addOnSuccessListener(downloadUri -> {
-                                userRefLocal.child("photos").push()
-                                        .setValue(downloadUri.toString());
-                                loadUserProfile(); // refresh grid
-                            }))
-                    .addOnFailureListener(e ->
-                            Toast.makeText(getContext(),
-                                    "Failed to upload photo: " + e.getMessage(),
-                                    Toast.LENGTH_SHORT).show());
+        boolean needsMainPhoto = TextUtils.isEmpty(displayedUserPhotoUrl);
+        setUploadProgress(0);
+
+        // Copy/downscale every pick into app storage first: the picker's content:// grants
+        // don't outlive the process, the queued upload does
+        File[] prepared = new File[uris.size()];
+        int[] pending = {uris.size()};
+        for (int i = 0; i < uris.size(); i++) {
+            int index = i;
+            ImagePreprocessor.prepareAsync(appContext, uris.get(i), file -> {
+                prepared[index] = file;
+                if (--pending[0] > 0) return;
+
+                // Keep the order the photos were picked in
+                List<File> files = new ArrayList<>();
+                for (File f : prepared) {
+                    if (f != null) files.add(f);
+                }
+                if (files.size() < uris.size() && isAdded()) {
+                    Toast.makeText(getContext(),
+                            "Failed to read " + (uris.size() - files.size()) + " photo(s)",
+                            Toast.LENGTH_SHORT).show();
+                }
+                if (files.isEmpty()) {
+                    setUploadProgress(-1);
+                    return;
+                }
+                if (needsMainPhoto) {
+                    // No main photo yet → the first pick becomes it, through profile_images/
+                    // so it gets thumbnails like any other main photo
+                    PhotoUploadWorker.enqueueProfilePhoto(appContext, uid, files.remove(0));
+                }
+                PhotoUploadWorker.enqueuePhotos(appContext, uid, files);
+            });
         }
     }
 
-    // ------------------ DISTANCE UTILS ------------------
     /**
-     * Haversine distance in km between 2 lat/lng pairs.
+     * Follows queued uploads (including ones left over from a previous session) and
+     * refreshes the grid once when the last one settles.
      */
-    private double calculateDistanceKm(double lat1, double lon1,
-                                       double lat2, double lon2) {
-        double R = 6371.0; // Earth radius in km
-        double dLat = Math.toRadians(lat2 - lat1);
-        double dLon = Math.toRadians(lon2 - lon1);
-        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
-                + Math.cos(Math.toRadians(lat1))
-                * Math.cos(Math.toRadians(lat2))
-                * Math.sin(dLon / 2) * Math.sin(dLon / 2);
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-        return R * c;
+    private void observeUploads() {
+        WorkManager.getInstance(requireContext())
+                .getWorkInfosByTagLiveData(PhotoUploadWorker.TAG_UPLOAD)
+                .observe(getViewLifecycleOwner(), infos -> {
+                    int active = 0;
+                    int progressSum = 0;
+                    int failed = 0;
+                    boolean settled = false;
+                    for (WorkInfo info : infos) {
+                        if (!info.getState().isFinished()) {
+                            active++;
+                            progressSum += info.getProgress().getInt(PhotoUploadWorker.KEY_PROGRESS, 0);
+                            watchedUploads.add(info.getId());
+                        } else if (watchedUploads.remove(info.getId())) {
+                            settled = true;
+                            failed += info.getOutputData().getInt(PhotoUploadWorker.KEY_FAILED, 0);
+                            if (info.getState() != WorkInfo.State.SUCCEEDED) failed++;
+                        }
+                    }
+
+                    if (active > 0) {
+                        setUploadProgress(progressSum / active);
+                        return;
+                    }
+                    setUploadProgress(-1);
+                    if (!settled) return;
+
+                    if (failed > 0) {
+                        Toast.makeText(getContext(),
+                                "Failed to upload " + failed + " photo(s)",
+                                Toast.LENGTH_SHORT).show();
+                    }
+                    loadUserProfile(); // refresh grid
+                });
+    }
+
+    /** Shows the batch progress bar at {@code percent}, or hides it for -1. */
+    private void setUploadProgress(int percent) {
+        if (uploadProgress == null) return;
+        if (percent < 0) {
+            uploadProgress.setVisibility(View.GONE);
+        } else {
+            uploadProgress.setVisibility(View.VISIBLE);
+            uploadProgress.setProgress(percent);
+        }
+    }
+
+    // ------------------ DISTANCE UTILS ------------------
+    private void showDistance(double myLat, double myLng, double otherLat, double otherLng) {
+        if (tvDistance == null) return;
+
+        double distanceKm = GeoDistance.haversineKm(myLat, myLng, otherLat, otherLng);
+        tvDistance.setText(String.format(Locale.getDefault(), "%.1f km", distanceKm));
     }
 
     // ------------------ UTIL ------------------
@@ -0,0 +1,156 @@
+package com.retroxinteractive.amora;
+
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.fragment.app.Fragment;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.ListPreloader;
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.load.DecodeFormat;
+import com.bumptech.glide.util.ViewPreloadSizeProvider;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Two-column photo grid on the profile screen. Cells are recycled, and each one loads the
+ * thumbnail variant that fits it ({@link ImageVariants}); {@link ImagePreloading} fetches
+ * the next rows before they scroll in.
+ */
+public class ProfilePhotosAdapter extends RecyclerView.Adapter<ProfilePhotosAdapter.PhotoViewHolder>
+        implements ListPreloader.PreloadModelProvider<ProfilePhotosAdapter.Photo> {
+
+    public static final int SPAN_COUNT = 2;
+
+    /** One photo: the original upload plus whatever thumbnails exist for it yet. */
+    public static final class Photo {
+        final String key;
+        final String url;
+        @Nullable final Map<String, String> thumbs;
+
+        public Photo(@NonNull String key, @NonNull String url, @Nullable Map<String, String> thumbs) {
+            this.key = key;
+            this.url = url;
+            this.thumbs = thumbs;
+        }
+    }
+
+    private static final DiffUtil.ItemCallback<Photo> DIFF = new DiffUtil.ItemCallback<Photo>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Photo oldItem, @NonNull Photo newItem) {
+            return oldItem.key.equals(newItem.key);
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Photo oldItem, @NonNull Photo newItem) {
+            return oldItem.url.equals(newItem.url) && Objects.equals(oldItem.thumbs, newItem.thumbs);
+        }
+    };
+
+    private final Fragment fragment;
+    private final AsyncListDiffer<Photo> differ = new AsyncListDiffer<>(this, DIFF);
+
+    /** Cell image size for {@link ImagePreloading}; taken from the first inflated cell. */
+    final ViewPreloadSizeProvider<Photo> preloadSizes = new ViewPreloadSizeProvider<>();
+    private int cellWidthPx;
+
+    public ProfilePhotosAdapter(@NonNull Fragment fragment) {
+        this.fragment = fragment;
+    }
+
+    /** Diffs off the main thread; unchanged cells keep their loaded image. */
+    public void submitList(@NonNull List<Photo> photos) {
+        differ.submitList(photos);
+    }
+
+    @NonNull
+    @Override
+    public PhotoViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext())
+                .inflate(R.layout.item_profile_photo, parent, false);
+        PhotoViewHolder holder = new PhotoViewHolder(view);
+        preloadSizes.setView(holder.imgPhoto);
+        return holder;
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull PhotoViewHolder holder, int position) {
+        cellWidthPx = ImageVariants.targetPx(holder.imgPhoto);
+        imageRequest(differ.getCurrentList().get(position)).into(holder.imgPhoto);
+    }
+
+    @Override
+    public void onViewRecycled(@NonNull PhotoViewHolder holder) {
+        // Hand the bitmap back to the pool as soon as the cell leaves the screen
+        Glide.with(fragment).clear(holder.imgPhoto);
+    }
+
+    @Override
+    public int getItemCount() {
+        return differ.getCurrentList().size();
+    }
+
+    @NonNull
+    private RequestBuilder<Drawable> imageRequest(@NonNull Photo photo) {
+        return Glide.with(fragment)
+                .load(ImageVariants.pick(photo.url, photo.thumbs, cellWidthPx))
+                .format(DecodeFormat.PREFER_RGB_565)
+                .centerCrop();
+    }
+
+    @NonNull
+    @Override
+    public List<Photo> getPreloadItems(int position) {
+        List<Photo> current = differ.getCurrentList();
+        if (position >= current.size() || cellWidthPx == 0) return Collections.emptyList();
+        return Collections.singletonList(current.get(position));
+    }
+
+    @Override
+    public RequestBuilder<?> getPreloadRequestBuilder(@NonNull Photo photo) {
+        return imageRequest(photo);
+    }
+
+    static class PhotoViewHolder extends RecyclerView.ViewHolder {
+        final ImageView imgPhoto;
+
+        PhotoViewHolder(@NonNull View itemView) {
+            super(itemView);
+            imgPhoto = itemView.findViewById(R.id.img_photo);
+        }
+    }
+
+    /** {@code gapPx} between columns and rows, none on the outer edges. */
+    static class GridSpacing extends RecyclerView.ItemDecoration {
+        private final int gapPx;
+
+        GridSpacing(int gapPx) {
+            this.gapPx = gapPx;
+        }
+
+        @Override
+        public void getItemOffsets(@NonNull Rect outRect, @NonNull View view,
+                                   @NonNull RecyclerView parent, @NonNull RecyclerView.State state) {
+            int position = parent.getChildAdapterPosition(view);
+            if (position == RecyclerView.NO_POSITION) return;
+
+            int column = position % SPAN_COUNT;
+            outRect.left = column * gapPx / SPAN_COUNT;
+            outRect.right = gapPx - (column + 1) * gapPx / SPAN_COUNT;
+            outRect.top = position >= SPAN_COUNT ? gapPx : 0;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.retroxinteractive.amora;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Orders candidates by a weighted sum of pluggable {@link Scorer}s.
+ *
+ * {@link #topK} keeps a min-heap of the best {@code k} seen so far, so ranking N
+ * candidates costs O(N log k) and only the k winners are ever sorted.
+ */
+public final class ProfileRanker {
+
+    /** One ranking signal, normalized to 0..1 (higher is better). */
+    public interface Scorer {
+        double score(@NonNull UserProfile profile);
+    }
+
+    // Distances beyond this contribute nothing to the proximity score
+    static final double PROXIMITY_MAX_KM = 100.0;
+
+    // A profile edited this long ago counts half as "recent" as one edited now
+    static final long RECENCY_HALF_LIFE_MS = 7L * 24 * 60 * 60 * 1000;
+
+    private final List<Scorer> scorers = new ArrayList<>();
+    private final List<Double> weights = new ArrayList<>();
+    @Nullable private Scorer tieBreak;
+
+    public ProfileRanker with(@NonNull Scorer scorer, double weight) {
+        scorers.add(scorer);
+        weights.add(weight);
+        return this;
+    }
+
+    /**
+     * Orders candidates with equal scores by {@code scorer}. Unlike a small weight it can
+     * never outweigh a real difference in the main score.
+     */
+    public ProfileRanker thenBy(@NonNull Scorer scorer) {
+        tieBreak = scorer;
+        return this;
+    }
+
+    // --- Presets ---
+
+    /** Home "For You": shared interests first, then distance, verified and activity. */
+    public static ProfileRanker forYou() {
+        return new ProfileRanker()
+                .with(interestOverlap(), 0.5)
+                .with(proximity(PROXIMITY_MAX_KM), 0.25)
+                .with(verified(), 0.15)
+                .with(recency(System.currentTimeMillis(), RECENCY_HALF_LIFE_MS), 0.10);
+    }
+
+    /** Discover "Nearest": strictly by distance, at any range; interests only break ties. */
+    public static ProfileRanker nearestFirst() {
+        return new ProfileRanker()
+                .with(nearness(), 1.0)
+                .thenBy(interestOverlap());
+    }
+
+    public static ProfileRanker newestFirst() {
+        return new ProfileRanker()
+                .with(recency(System.currentTimeMillis(), RECENCY_HALF_LIFE_MS), 1.0);
+    }
+
+    public static ProfileRanker verifiedFirst() {
+        return new ProfileRanker()
+                .with(verified(), 1.0)
+                .with(interestOverlap(), 0.5);
+    }
+
+    // --- Scorers ---
+
+    public static Scorer interestOverlap() {
+        return p -> {
+            Integer match = p.getMatchPercent();
+            return match == null ? 0 : match / 100.0;
+        };
+    }
+
+    /** 1 at 0 km, falling linearly to 0 at {@code maxKm}; unknown distance scores 0. */
+    public static Scorer proximity(double maxKm) {
+        return p -> {
+            Double d = p.getDistanceKm();
+            if (d == null) return 0;
+            return Math.max(0, 1 - d / maxKm);
+        };
+    }
+
+    /**
+     * Strictly decreasing with distance and never clamped, so it orders any two distances;
+     * unknown distance scores 0, below every known one.
+     */
+    public static Scorer nearness() {
+        return p -> {
+            Double d = p.getDistanceKm();
+            if (d == null) return 0;
+            return 1 / (1 + Math.max(0, d));
+        };
+    }
+
+    public static Scorer verified() {
+        return p -> p.getVerified() ? 1 : 0;
+    }
+
+    /** Exponential decay on {@code updatedAt}; profiles never stamped score 0. */
+    public static Scorer recency(long nowMs, long halfLifeMs) {
+        return p -> {
+            Long updatedAt = p.getUpdatedAt();
+            if (updatedAt == null) return 0;
+            long age = Math.max(0, nowMs - updatedAt);
+            return Math.pow(0.5, (double) age / halfLifeMs);
+        };
+    }
+
+    // --- Ranking ---
+
+    public double score(@NonNull UserProfile profile) {
+        double total = 0;
+        for (int i = 0; i < scorers.size(); i++) {
+            total += weights.get(i) * scorers.get(i).score(profile);
+        }
+        return total;
+    }
+
+    /**
+     * The best {@code k} candidates, highest score first. Ties keep uid order so the
+     * result is stable between refreshes.
+     */
+    @NonNull
+    public List<UserProfile> topK(@NonNull Collection<UserProfile> candidates, int k) {
+        if (k <= 0 || candidates.isEmpty()) return Collections.emptyList();
+
+        // Min-heap: the root is the weakest of the current top k
+        PriorityQueue<Scored> heap = new PriorityQueue<>(Math.min(k, candidates.size()) + 1);
+        for (UserProfile p : candidates) {
+            Scored s = new Scored(p, score(p), tieBreak != null ? tieBreak.score(p) : 0);
+            if (heap.size() < k) {
+                heap.add(s);
+            } else if (s.compareTo(heap.peek()) > 0) {
+                heap.poll();
+                heap.add(s);
+            }
+        }
+
+        UserProfile[] out = new UserProfile[heap.size()];
+        for (int i = out.length - 1; i >= 0; i--) {
+            out[i] = heap.poll().profile;
+        }
+        List<UserProfile> result = new ArrayList<>(out.length);
+        Collections.addAll(result, out);
+        return result;
+    }
+
+    /**
+     * Paging version of {@link #topK}: the profiles in {@code shownUids} keep their place
+     * (with their current data; ones no longer in {@code candidates} drop out) and the
+     * best of the rest are appended up to {@code k}, so cards already scrolled past never
+     * reshuffle.
+     */
+    @NonNull
+    public List<UserProfile> extend(@NonNull List<String> shownUids,
+                                    @NonNull Collection<UserProfile> candidates, int k) {
+        Map<String, UserProfile> byUid = new HashMap<>();
+        for (UserProfile p : candidates) {
+            byUid.put(p.getUid(), p);
+        }
+
+        List<UserProfile> result = new ArrayList<>(Math.max(k, shownUids.size()));
+        for (String uid : shownUids) {
+            UserProfile p = byUid.remove(uid);
+            if (p != null) result.add(p);
+        }
+        result.addAll(topK(byUid.values(), k - result.size()));
+        return result;
+    }
+
+    private static final class Scored implements Comparable<Scored> {
+        final UserProfile profile;
+        final double score;
+        final double tie;
+
+        Scored(UserProfile profile, double score, double tie) {
+            this.profile = profile;
+            this.score = score;
+            this.tie = tie;
+        }
+
+        /** Natural order is "worse first": lower score, lower tie-break, then larger uid. */
+        @Override
+        public int compareTo(Scored o) {
+            int c = Double.compare(score, o.score);
+            if (c != 0) return c;
+            c = Double.compare(tie, o.tie);
+            if (c != 0) return c;
+            String a = profile.getUid() != null ? profile.getUid() : "";
+            String b = o.profile.getUid() != null ? o.profile.getUid() : "";
+            return b.compareTo(a);
+        }
+    }
+}
@@ -0,0 +1,993 @@
+package com.retroxinteractive.amora;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Process-wide owner of the profile feed subscription.
+ *
+ * HomepageFragment, DiscoverFragment and ProfileFragment all read from here, so switching
+ * tabs no longer re-downloads and re-parses every user. Each user is parsed once into a
+ * UserProfile (with distance + match % for the signed-in user) and handed out as an
+ * unmodifiable snapshot list.
+ *
+ * Updates arrive as child events, so a write to one user only re-parses and re-scores
+ * that user. Profiles in a published list are never mutated afterwards.
+ *
+ * The feed reads the compact /profileCards projection ({@link ProfileCards}), not /users;
+ * only my own full record is read from /users.
+ *
+ * Users are loaded a page at a time in key order ({@link #loadNextPage()}), so the first
+ * cards show up after {@link #PAGE_SIZE} users, not after the whole node downloads.
+ *
+ * The last published list is kept in {@link ProfileCache}. On a cold start it is shown
+ * right away and only cards with a newer {@code updatedAt} are downloaded (delta sync);
+ * cards deleted since are dropped via their /deletedCards tombstones.
+ *
+ * Threading: Firebase delivers events on the main thread; they are handed straight to
+ * the single-threaded {@link AppExecutors#profiles()} stage, which owns the working
+ * state (parsing, scoring, list building). Only the finished list is posted back.
+ */
+public final class ProfileRepository {
+
+    public interface Listener {
+        void onProfilesChanged(@NonNull List<UserProfile> profiles);
+
+        default void onProfilesError(@NonNull DatabaseError error) { }
+    }
+
+    public interface NearbyCallback {
+        void onNearbyLoaded(@NonNull List<UserProfile> profiles);
+    }
+
+    public interface FeedCallback {
+        /** Best first; empty when the server hasn't built a feed for this user yet. */
+        void onFeedLoaded(@NonNull List<UserProfile> profiles);
+    }
+
+    /** Users fetched per page; the first page decides time-to-first-card. */
+    public static final int PAGE_SIZE = 20;
+
+    // Keep the subscription alive for a while after the last screen goes away,
+    // so a quick tab switch reuses the data we already have.
+    private static final long DETACH_DELAY_MS = 30_000L;
+
+    // Live lists are written to the on-device cache at most this often
+    private static final long CACHE_WRITE_DELAY_MS = 5_000L;
+
+    // Failed "is this card still there?" reads are retried this often (with backoff)
+    // before the card is treated as gone
+    private static final int CARD_CHECK_ATTEMPTS = 4;
+    private static final long CARD_CHECK_RETRY_MS = 2_000L;
+
+    private static final String TAG = "ProfileRepository";
+
+    private static ProfileRepository instance;
+
+    private final DatabaseReference usersRef;
+    private final DatabaseReference cardsRef;
+    private final DatabaseReference tombstonesRef;
+    private final DatabaseReference feedsRef;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Executor worker = AppExecutors.profiles();
+    private final List<Listener> listeners = new ArrayList<>();
+    private final Runnable detachRunnable = this::detach;
+    private final Runnable cacheWriteRunnable = this::flushCacheWrite;
+
+    // ---- main thread state ----
+    private final List<Page> pages = new ArrayList<>();
+    private final Set<String> evictedKeys = new HashSet<>(); // watched on their own, see onChildRemoved
+    private DatabaseReference meRef;
+    private ValueEventListener meListener;
+    private String subscribedUid;
+    private String pageCursor;          // last key of the last loaded page
+    private boolean hasMorePages = true;
+    private boolean pageLoading = false;
+    private final List<Runnable> pageCallbacks = new ArrayList<>(); // see loadNextPage(Runnable)
+    private List<UserProfile> profiles = Collections.emptyList();
+    private Map<String, UserProfile> publishedByUid = Collections.emptyMap();
+    private InterestIndex.Snapshot publishedIndex = InterestIndex.Snapshot.EMPTY;
+    @Nullable private UserProfile me;
+    private boolean loaded = false;
+    @Nullable private ProfileCache cache;
+    @Nullable private List<UserProfile> pendingCacheWrite;
+    @Nullable private String pendingCacheOwner;
+
+    // Bumped on every detach so work queued for an old subscription is dropped
+    private volatile int generation = 0;
+
+    // ---- worker thread state (only touched on AppExecutors.profiles()) ----
+    // Sorted by uid = Firebase key order
+    private final Map<String, UserProfile> profilesByUid = new TreeMap<>();
+    private final InterestIndex interestIndex = new InterestIndex();
+    @Nullable private UserProfile workerMe;
+    @Nullable private GeoDistance.Viewer workerViewer;
+    private boolean workerLoaded = false;
+    private boolean publishPending = false;
+
+    /**
+     * One live feed query: a limitToFirst window of the key order, a delta query, or a
+     * single key pushed out of its window.
+     */
+    private static final class Page {
+        final Query query;
+        final ChildEventListener listener;
+
+        Page(Query query, ChildEventListener listener) {
+            this.query = query;
+            this.listener = listener;
+        }
+    }
+
+    private ProfileRepository() {
+        usersRef = FirebaseDatabase.getInstance().getReference("users");
+        cardsRef = FirebaseDatabase.getInstance().getReference(ProfileCards.NODE);
+        tombstonesRef = FirebaseDatabase.getInstance().getReference(ProfileCards.TOMBSTONES);
+        feedsRef = FirebaseDatabase.getInstance().getReference("feeds");
+    }
+
+    public static synchronized ProfileRepository getInstance() {
+        if (instance == null) {
+            instance = new ProfileRepository();
+        }
+        return instance;
+    }
+
+    /**
+     * Enables the on-device cache. Called once at startup, before the feed screens attach.
+     */
+    public void setCache(@Nullable ProfileCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Registers a listener. If data is already loaded it is delivered immediately.
+     */
+    public void addListener(@NonNull Listener listener) {
+        mainHandler.removeCallbacks(detachRunnable);
+
+        if (!listeners.contains(listener)) {
+            listeners.add(listener);
+        }
+
+        attachIfNeeded();
+
+        if (loaded) {
+            listener.onProfilesChanged(profiles);
+        }
+    }
+
+    public void removeListener(@NonNull Listener listener) {
+        listeners.remove(listener);
+        if (listeners.isEmpty()) {
+            mainHandler.removeCallbacks(detachRunnable);
+            mainHandler.postDelayed(detachRunnable, DETACH_DELAY_MS);
+        }
+    }
+
+    /** Everyone loaded so far except the signed-in user, in Firebase key order. */
+    @NonNull
+    public List<UserProfile> getProfiles() {
+        return profiles;
+    }
+
+    @Nullable
+    public UserProfile getProfile(@Nullable String uid) {
+        if (uid == null) return null;
+        if (me != null && uid.equals(me.getUid())) return me;
+        return publishedByUid.get(uid);
+    }
+
+    /**
+     * Loaded profiles having all of {@code interests} (case-insensitive), in key order.
+     * Answered from the inverted interest index, not by scanning every profile.
+     */
+    @NonNull
+    public List<UserProfile> findByInterests(@NonNull Collection<String> interests) {
+        int[] ids = new int[interests.size()];
+        int i = 0;
+        for (String interest : interests) {
+            int id = InterestVocabulary.idOf(interest);
+            if (id < 0) return Collections.emptyList();
+            ids[i++] = id;
+        }
+
+        List<UserProfile> result = new ArrayList<>();
+        for (String uid : publishedIndex.intersect(ids)) {
+            UserProfile profile = publishedByUid.get(uid);
+            if (profile != null) result.add(profile);
+        }
+        return result;
+    }
+
+    /** Labels of every interest some loaded profile has, in first-seen order. */
+    @NonNull
+    public List<String> getAvailableInterests() {
+        List<String> names = new ArrayList<>();
+        for (int id : publishedIndex.interestIds()) {
+            String name = InterestVocabulary.displayName(id);
+            if (name != null) names.add(name);
+        }
+        return names;
+    }
+
+    /** The signed-in user's own record, or null if not loaded yet. */
+    @Nullable
+    public UserProfile getMe() {
+        return me;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /** Drops the subscription and cached data, e.g. on logout. */
+    public void clear() {
+        mainHandler.removeCallbacks(detachRunnable);
+        detach();
+        listeners.clear();
+
+        ProfileCache c = cache;
+        if (c != null) {
+            // Queued after the flush detach() may have started
+            worker.execute(c::clearAll);
+        }
+    }
+
+    /**
+     * Loads users within {@code radiusKm} of the signed-in user by querying only the
+     * geohash cells that cover the circle. Results are sorted by distance, nearest first.
+     * Users saved before geohashes were written are not found by this query.
+     */
+    public void loadNearby(double radiusKm, @NonNull NearbyCallback callback) {
+        UserProfile viewer = me;
+        if (viewer == null || viewer.getLatitude() == null || viewer.getLongitude() == null) {
+            callback.onNearbyLoaded(Collections.emptyList());
+            return;
+        }
+
+        String myUid = viewer.getUid();
+        GeoDistance.Viewer geo = viewerOf(viewer);
+        List<String> cells = GeoHash.coveringCells(
+                viewer.getLatitude(), viewer.getLongitude(), radiusKm);
+
+        // Only touched on the worker thread
+        Map<String, UserProfile> found = new HashMap<>();
+        int[] pending = {cells.size()};
+
+        for (String cell : cells) {
+            cardsRef.orderByChild("geohash")
+                    .startAt(cell)
+                    .endAt(cell + "\uf8ff")
+                    .addListenerForSingleValueEvent(new ValueEventListener() {
+                        @Override
+                        public void onDataChange(@NonNull DataSnapshot snapshot) {
+                            worker.execute(() -> {
+                                for (DataSnapshot child : snapshot.getChildren()) {
+                                    String uid = child.getKey();
+                                    if (uid == null || uid.equals(myUid)) continue;
+
+                                    Boolean profileCompleted =
+                                            child.child("profileCompleted").getValue(Boolean.class);
+                                    if (profileCompleted != null && !profileCompleted) continue;
+
+                                    UserProfile profile = parseProfile(child);
+                                    applyScores(viewer, geo, profile);
+
+                                    // Cells are a superset of the circle → exact check here
+                                    Double distance = profile.getDistanceKm();
+                                    if (distance != null && distance <= radiusKm) {
+                                        found.put(uid, profile);
+                                    }
+                                }
+                                onCellDone();
+                            });
+                        }
+
+                        @Override
+                        public void onCancelled(@NonNull DatabaseError error) {
+                            worker.execute(this::onCellDone);
+                        }
+
+                        private void onCellDone() {
+                            if (--pending[0] > 0) return;
+
+                            List<UserProfile> result = new ArrayList<>(found.values());
+                            result.sort((a, b) -> Double.compare(a.getDistanceKm(), b.getDistanceKm()));
+                            List<UserProfile> out = Collections.unmodifiableList(result);
+                            mainHandler.post(() -> callback.onNearbyLoaded(out));
+                        }
+                    });
+        }
+    }
+
+    /**
+     * Reads the ranked candidate list the onUserProfileWritten Cloud Function keeps at
+     * /feeds/{uid}: at most a hundred small cards instead of the whole /users node.
+     * Entries carry the server's distance / match, so nothing is re-scored here.
+     */
+    public void loadFeed(@NonNull FeedCallback callback) {
+        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+        if (user == null) {
+            callback.onFeedLoaded(Collections.emptyList());
+            return;
+        }
+
+        feedsRef.child(user.getUid()).addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                worker.execute(() -> {
+                    List<UserProfile> result = new ArrayList<>();
+                    Map<String, Double> scores = new HashMap<>();
+                    for (DataSnapshot child : snapshot.getChildren()) {
+                        UserProfile profile = parseProfile(child);
+                        profile.setDistanceKm(child.child("distanceKm").getValue(Double.class));
+                        profile.setMatchPercent(child.child("matchPercent").getValue(Integer.class));
+
+                        Double score = child.child("score").getValue(Double.class);
+                        scores.put(profile.getUid(), score != null ? score : 0.0);
+                        result.add(profile);
+                    }
+                    result.sort((a, b) -> Double.compare(scores.get(b.getUid()), scores.get(a.getUid())));
+
+                    List<UserProfile> out = Collections.unmodifiableList(result);
+                    mainHandler.post(() -> callback.onFeedLoaded(out));
+                });
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                // No feed access → screens keep ranking the live list themselves
+                callback.onFeedLoaded(Collections.emptyList());
+            }
+        });
+    }
+
+    /**
+     * Loads the next page of users (key order, {@link #PAGE_SIZE} at a time) after the
+     * current cursor. Called by the feed screens as the user scrolls near the end.
+     */
+    public void loadNextPage() {
+        loadNextPage(null);
+    }
+
+    /**
+     * Same, and runs {@code onLoaded} on the main thread once the page's users have reached
+     * the listeners (or failed to load). Also if a page was already loading, and right
+     * away if no more pages are coming.
+     */
+    public void loadNextPage(@Nullable Runnable onLoaded) {
+        if (subscribedUid == null || !hasMorePages) {
+            if (onLoaded != null) runAfterPublish(Collections.singletonList(onLoaded));
+            return;
+        }
+        if (onLoaded != null) pageCallbacks.add(onLoaded);
+        if (pageLoading) return;
+        pageLoading = true;
+
+        final String uid = subscribedUid;
+        final int gen = generation;
+
+        Query query = cardsRef.orderByKey();
+        if (pageCursor != null) {
+            query = query.startAfter(pageCursor);
+        }
+        query = query.limitToFirst(PAGE_SIZE);
+
+        ChildEventListener pageListener = newFeedListener(uid, gen);
+        query.addChildEventListener(pageListener);
+        pages.add(new Page(query, pageListener));
+
+        // Fires once after this page's onChildAdded events, served from the same synced
+        // data (no second download). Moves the cursor and tells us if more pages exist.
+        query.addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                if (gen != generation) return;
+
+                String lastKey = null;
+                for (DataSnapshot child : snapshot.getChildren()) {
+                    lastKey = child.getKey();
+                }
+                if (lastKey != null) {
+                    pageCursor = lastKey;
+                }
+                hasMorePages = snapshot.getChildrenCount() >= PAGE_SIZE;
+                pageLoading = false;
+
+                List<Runnable> done = takePageCallbacks();
+                worker.execute(() -> {
+                    if (gen == generation) {
+                        workerLoaded = true;
+                        schedulePublish();
+                    }
+                    runAfterPublish(done);
+                });
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                if (gen != generation) return;
+                pageLoading = false;
+                runAfterPublish(takePageCallbacks());
+                notifyError(error);
+            }
+        });
+    }
+
+    @NonNull
+    private List<Runnable> takePageCallbacks() {
+        List<Runnable> taken = new ArrayList<>(pageCallbacks);
+        pageCallbacks.clear();
+        return taken;
+    }
+
+    /**
+     * Runs {@code callbacks} on the main thread behind every publish already queued on the
+     * worker, so listeners have seen the page by then. Any thread.
+     */
+    private void runAfterPublish(@NonNull List<Runnable> callbacks) {
+        if (callbacks.isEmpty()) return;
+        worker.execute(() -> mainHandler.post(() -> {
+            for (Runnable r : callbacks) r.run();
+        }));
+    }
+
+    public boolean hasMorePages() {
+        return hasMorePages;
+    }
+
+    /**
+     * Child events of a feed query (a key page or the delta query) → worker updates.
+     */
+    private ChildEventListener newFeedListener(@NonNull String uid, int gen) {
+        return new ChildEventListener() {
+            @Override
+            public void onChildAdded(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+                worker.execute(() -> {
+                    if (gen == generation) onUserChanged(snapshot, uid);
+                });
+            }
+
+            @Override
+            public void onChildChanged(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+                worker.execute(() -> {
+                    if (gen == generation) onUserChanged(snapshot, uid);
+                });
+            }
+
+            @Override
+            public void onChildRemoved(@NonNull DataSnapshot snapshot) {
+                // A limit window also "removes" children that were merely pushed out of
+                // it by a new key inserted before them. The next window starts after the
+                // old cursor, so nothing else covers those: they get a watch of their own.
+                // Only users that are really gone are dropped.
+                String key = snapshot.getKey();
+                if (key == null) return;
+                checkCard(key, gen, 0, exists -> {
+                    if (exists) {
+                        watchEvicted(key, uid, gen);
+                    } else {
+                        worker.execute(() -> {
+                            if (gen == generation) onUserRemoved(key, uid);
+                        });
+                    }
+                });
+            }
+
+            @Override
+            public void onChildMoved(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                notifyError(error);
+            }
+        };
+    }
+
+    /** Keeps a card that fell out of its key window live with a query for just that key. */
+    private void watchEvicted(@NonNull String key, @NonNull String uid, int gen) {
+        if (!evictedKeys.add(key)) return;
+
+        Query query = cardsRef.orderByKey().equalTo(key);
+        ChildEventListener listener = newFeedListener(uid, gen);
+        query.addChildEventListener(listener);
+        pages.add(new Page(query, listener));
+    }
+
+    private void removeIfGone(@Nullable String key, @NonNull String uid, int gen) {
+        if (key == null) return;
+        checkCard(key, gen, 0, exists -> {
+            if (exists) return;
+            worker.execute(() -> {
+                if (gen == generation) onUserRemoved(key, uid);
+            });
+        });
+    }
+
+    private interface CardCheck {
+        void onResult(boolean exists);
+    }
+
+    /**
+     * Whether card {@code key} still exists, on the main thread. A failed read (offline,
+     * permission) is logged and retried with backoff; if it keeps failing the card is
+     * reported gone, so a deleted user can't stay in the feed; a card that did still
+     * exist comes back the next time it changes.
+     */
+    private void checkCard(@NonNull String key, int gen, int attempt, @NonNull CardCheck check) {
+        cardsRef.child(key).get()
+                .addOnSuccessListener(current -> {
+                    if (gen == generation) check.onResult(current.exists());
+                })
+                .addOnFailureListener(e -> {
+                    if (gen != generation) return;
+                    Log.w(TAG, "Checking card " + key + " failed (attempt " + (attempt + 1) + ")", e);
+                    if (attempt + 1 >= CARD_CHECK_ATTEMPTS) {
+                        check.onResult(false);
+                        return;
+                    }
+                    mainHandler.postDelayed(() -> {
+                        if (gen == generation) checkCard(key, gen, attempt + 1, check);
+                    }, CARD_CHECK_RETRY_MS << attempt);
+                });
+    }
+
+    /**
+     * Delta sync: live changes to every card stamped at or after {@code mark}, plus the
+     * tombstones of cards deleted since then. Together with the cached working set this
+     * replaces re-downloading the pages already seen.
+     */
+    private void startDeltaSync(@NonNull String uid, int gen, @NonNull String lastCachedKey, long mark) {
+        // Key paging continues after what the cache already holds
+        pageCursor = lastCachedKey;
+
+        Query query = cardsRef.orderByChild("updatedAt").startAt(mark);
+        ChildEventListener listener = newFeedListener(uid, gen);
+        query.addChildEventListener(listener);
+        pages.add(new Page(query, listener));
+
+        // Deleted while the app was closed: the cache still has them
+        Query deleted = tombstonesRef.orderByValue().startAt(mark);
+        ChildEventListener deletedListener = new ChildEventListener() {
+            @Override
+            public void onChildAdded(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+                // A card re-created since keeps its tombstone briefly; check it is gone
+                removeIfGone(snapshot.getKey(), uid, gen);
+            }
+
+            @Override
+            public void onChildChanged(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+                removeIfGone(snapshot.getKey(), uid, gen);
+            }
+
+            @Override
+            public void onChildRemoved(@NonNull DataSnapshot snapshot) {
+            }
+
+            @Override
+            public void onChildMoved(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                notifyError(error);
+            }
+        };
+        deleted.addChildEventListener(deletedListener);
+        pages.add(new Page(deleted, deletedListener));
+    }
+
+    private void attachIfNeeded() {
+        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+        if (user == null) return;
+
+        String uid = user.getUid();
+        if (uid.equals(subscribedUid)) {
+            return;
+        }
+
+        // Different user signed in (or first attach) → start fresh
+        detach();
+        subscribedUid = uid;
+        final int gen = generation;
+
+        // My own record is needed for scoring no matter which page it falls on
+        meRef = usersRef.child(uid);
+        meListener = new ValueEventListener() {
+            private boolean cardSynced = false;
+
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                if (!cardSynced && snapshot.exists()) {
+                    // Backfills / repairs my card, e.g. for profiles saved before cards
+                    // existed; a card that is already in sync is left alone
+                    cardSynced = true;
+                    cardsRef.child(uid).get().addOnSuccessListener(card -> {
+                        Map<String, Object> repair = ProfileCards.backfill(snapshot, card);
+                        if (!repair.isEmpty()) {
+                            cardsRef.getRoot().updateChildren(repair);
+                        }
+                    });
+                }
+                worker.execute(() -> {
+                    if (gen == generation) updateMe(snapshot.exists() ? parseProfile(snapshot) : null);
+                });
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                notifyError(error);
+            }
+        };
+        meRef.addValueEventListener(meListener);
+
+        startFromCache(uid, gen);
+    }
+
+    /**
+     * Cold start. A cached set becomes the working set right away and only cards changed
+     * since its high-water mark are fetched; paging resumes after the last cached key.
+     * Without a cache, paging starts from the first key.
+     */
+    private void startFromCache(@NonNull String uid, int gen) {
+        ProfileCache c = cache;
+        if (c == null) {
+            loadNextPage();
+            return;
+        }
+
+        // No paging until we know where the cache ends
+        pageLoading = true;
+
+        // Queued on the worker ahead of every live event
+        worker.execute(() -> {
+            if (gen != generation) return;
+
+            ProfileCache.Snapshot cached = c.load(uid);
+            if (cached.profiles.isEmpty()) {
+                mainHandler.post(() -> {
+                    if (gen != generation) return;
+                    pageLoading = false;
+                    loadNextPage();
+                });
+                return;
+            }
+
+            for (UserProfile p : cached.profiles) {
+                profilesByUid.put(p.getUid(), p);
+                interestIndex.add(p);
+            }
+            workerLoaded = true;
+            schedulePublish();
+
+            String lastKey = cached.profiles.get(cached.profiles.size() - 1).getUid();
+            mainHandler.post(() -> {
+                if (gen != generation) return;
+                pageLoading = false;
+                // The cached set stands in for the page callers were waiting on
+                runAfterPublish(takePageCallbacks());
+                startDeltaSync(uid, gen, lastKey, cached.mark);
+            });
+        });
+    }
+
+    /** Coalesces live publishes into one cache write per {@link #CACHE_WRITE_DELAY_MS}. */
+    private void scheduleCacheWrite(@NonNull List<UserProfile> list) {
+        if (cache == null || subscribedUid == null) return;
+
+        boolean alreadyScheduled = pendingCacheWrite != null;
+        pendingCacheWrite = list;
+        pendingCacheOwner = subscribedUid;
+        if (!alreadyScheduled) {
+            mainHandler.postDelayed(cacheWriteRunnable, CACHE_WRITE_DELAY_MS);
+        }
+    }
+
+    private void flushCacheWrite() {
+        mainHandler.removeCallbacks(cacheWriteRunnable);
+        ProfileCache c = cache;
+        List<UserProfile> list = pendingCacheWrite;
+        String owner = pendingCacheOwner;
+        String lastPagedKey = pageCursor;
+        pendingCacheWrite = null;
+        pendingCacheOwner = null;
+
+        if (c != null && list != null && owner != null && lastPagedKey != null) {
+            // Published lists are immutable, so the worker can read this one freely
+            worker.execute(() -> c.save(owner, list, lastPagedKey));
+        }
+    }
+
+    private void notifyError(@NonNull DatabaseError error) {
+        for (Listener l : new ArrayList<>(listeners)) {
+            l.onProfilesError(error);
+        }
+    }
+
+    private void detach() {
+        // Don't lose the last live list just because nobody is watching any more
+        flushCacheWrite();
+
+        for (Page page : pages) {
+            page.query.removeEventListener(page.listener);
+        }
+        pages.clear();
+        evictedKeys.clear();
+        if (meListener != null) {
+            meRef.removeEventListener(meListener);
+            meListener = null;
+            meRef = null;
+        }
+        pageCursor = null;
+        hasMorePages = true;
+        pageLoading = false;
+        runAfterPublish(takePageCallbacks()); // nothing more is coming for them
+
+        generation++;
+        subscribedUid = null;
+        profiles = Collections.emptyList();
+        publishedByUid = Collections.emptyMap();
+        publishedIndex = InterestIndex.Snapshot.EMPTY;
+        me = null;
+        loaded = false;
+
+        worker.execute(() -> {
+            profilesByUid.clear();
+            interestIndex.clear();
+            workerMe = null;
+            workerViewer = null;
+            workerLoaded = false;
+            publishPending = false;
+        });
+    }
+
+    // ---------------- worker thread ----------------
+
+    /**
+     * One user record was added or changed: re-parse and re-score only that user.
+     */
+    private void onUserChanged(@NonNull DataSnapshot child, @NonNull String currentUid) {
+        String uid = child.getKey();
+        if (uid == null) return;
+
+        if (uid.equals(currentUid)) {
+            updateMe(parseProfile(child));
+            return;
+        }
+
+        Boolean profileCompleted =
+                child.child("profileCompleted").getValue(Boolean.class);
+        if (profileCompleted != null && !profileCompleted) {
+            // Incomplete (or no longer complete) profiles are not shown
+            removeProfile(uid);
+            return;
+        }
+
+        UserProfile profile = parseProfile(child);
+        applyScores(workerMe, workerViewer, profile);
+
+        UserProfile previous = profilesByUid.put(uid, profile);
+        if (previous != null && previous.hasSameContent(profile)) {
+            // e.g. an fcmToken refresh: nothing the feed shows has changed
+            profilesByUid.put(uid, previous);
+            return;
+        }
+        if (previous != null) {
+            interestIndex.remove(previous);
+        }
+        interestIndex.add(profile);
+        schedulePublish();
+    }
+
+    private void onUserRemoved(@Nullable String uid, @NonNull String currentUid) {
+        if (uid == null) return;
+
+        if (uid.equals(currentUid)) {
+            updateMe(null);
+        } else {
+            removeProfile(uid);
+        }
+    }
+
+    private void removeProfile(@NonNull String uid) {
+        UserProfile removed = profilesByUid.remove(uid);
+        if (removed != null) {
+            interestIndex.remove(removed);
+            schedulePublish();
+        }
+    }
+
+    /**
+     * My own record changed. Everyone else is only re-scored when my location or
+     * interests actually changed.
+     */
+    private void updateMe(@Nullable UserProfile mine) {
+        UserProfile old = workerMe;
+        workerMe = mine;
+
+        boolean scoringInputsChanged = old == null || mine == null
+                || !Objects.equals(old.getLatitude(), mine.getLatitude())
+                || !Objects.equals(old.getLongitude(), mine.getLongitude())
+                || !Arrays.equals(old.getInterestBits(), mine.getInterestBits());
+        if (scoringInputsChanged) {
+            workerViewer = viewerOf(mine);
+            rescoreAll(mine, workerViewer);
+        }
+        schedulePublish();
+    }
+
+    /**
+     * Re-scores every cached profile against a new viewer. Coordinates go through the
+     * distance kernel as one primitive batch instead of boxed Doubles per profile.
+     */
+    private void rescoreAll(@Nullable UserProfile mine, @Nullable GeoDistance.Viewer geo) {
+        int n = profilesByUid.size();
+        double[] lats = new double[n];
+        double[] lngs = new double[n];
+        double[] distances = new double[n];
+
+        int i = 0;
+        for (UserProfile p : profilesByUid.values()) {
+            boolean located = p.getLatitude() != null && p.getLongitude() != null;
+            lats[i] = located ? p.getLatitude() : Double.NaN;
+            lngs[i] = located ? p.getLongitude() : Double.NaN;
+            i++;
+        }
+        if (geo != null) {
+            geo.distancesKm(lats, lngs, n, distances);
+        }
+
+        i = 0;
+        for (Map.Entry<String, UserProfile> entry : profilesByUid.entrySet()) {
+            // Copy so screens holding the previous snapshot keep seeing old values
+            UserProfile rescored = entry.getValue().copy();
+            double d = distances[i++];
+            rescored.setDistanceKm(geo == null || Double.isNaN(d) ? null : d);
+            rescored.setMatchPercent(matchPercent(mine, rescored));
+            entry.setValue(rescored);
+        }
+    }
+
+    /**
+     * Coalesces a burst of child events (e.g. the initial load) into one list rebuild:
+     * the publish task queues behind events already waiting on the worker.
+     */
+    private void schedulePublish() {
+        if (!workerLoaded || publishPending) return;
+        publishPending = true;
+
+        final int gen = generation;
+        worker.execute(() -> {
+            if (gen == generation) publish(gen);
+        });
+    }
+
+    private void publish(int gen) {
+        publishPending = false;
+
+        List<UserProfile> list = Collections.unmodifiableList(new ArrayList<>(profilesByUid.values()));
+        Map<String, UserProfile> byUid = new HashMap<>(profilesByUid);
+        InterestIndex.Snapshot index = interestIndex.snapshot();
+        UserProfile mine = workerMe;
+
+        // Only the final swap happens on the main thread
+        mainHandler.post(() -> {
+            if (gen != generation) return;
+
+            profiles = list;
+            publishedByUid = byUid;
+            publishedIndex = index;
+            me = mine;
+            loaded = true;
+
+            for (Listener l : new ArrayList<>(listeners)) {
+                l.onProfilesChanged(profiles);
+            }
+            scheduleCacheWrite(list);
+        });
+    }
+
+    /**
+     * Reads one /users/{uid} record into a UserProfile (no distance / match yet).
+     */
+    @NonNull
+    static UserProfile parseProfile(@NonNull DataSnapshot child) {
+        UserProfile profile = new UserProfile();
+        profile.setUid(child.getKey());
+        profile.setName(child.child("name").getValue(String.class));
+        profile.setBio(child.child("bio").getValue(String.class));
+        profile.setAge(child.child("age").getValue(String.class));
+        profile.setAddress(child.child("address").getValue(String.class));
+
+        // This is how it is saved in the DB
+        profile.setPhotoUrl(child.child("profileImageUrl").getValue(String.class));
+        profile.setPhotoThumbs(parseThumbs(child.child("profileImageThumbs")));
+
+        Boolean verified = child.child("verified").getValue(Boolean.class);
+        profile.setVerified(verified != null && verified);
+
+        // Interests (0,1,2,...)
+        List<String> interests = new ArrayList<>();
+        for (DataSnapshot iSnap : child.child("interests").getChildren()) {
+            String interest = iSnap.getValue(String.class);
+            if (interest != null && !interest.trim().isEmpty()) {
+                interests.add(interest.trim());
+            }
+        }
+        profile.setInterestsIndexed(interests);
+
+        profile.setLatitude(child.child("latitude").getValue(Double.class));
+        profile.setLongitude(child.child("longitude").getValue(Double.class));
+        profile.setUpdatedAt(child.child("updatedAt").getValue(Long.class));
+        return profile;
+    }
+
+    /** {size: url} written by the onImageUploaded Cloud Function, or null if none yet. */
+    @Nullable
+    static Map<String, String> parseThumbs(@NonNull DataSnapshot thumbs) {
+        if (!thumbs.hasChildren()) return null;
+        Map<String, String> result = new HashMap<>();
+        for (DataSnapshot size : thumbs.getChildren()) {
+            String url = size.getValue(String.class);
+            if (size.getKey() != null && url != null) result.put(size.getKey(), url);
+        }
+        return result;
+    }
+
+    /**
+     * Fills distance + match % of {@code profile} as seen by {@code viewer}.
+     * {@code geo} is the viewer's prepared position, or null when the viewer has none.
+     */
+    private static void applyScores(@Nullable UserProfile viewer,
+                                    @Nullable GeoDistance.Viewer geo,
+                                    @NonNull UserProfile profile) {
+        Double distance = null;
+        if (geo != null && profile.getLatitude() != null && profile.getLongitude() != null) {
+            distance = geo.distanceKm(profile.getLatitude(), profile.getLongitude());
+        }
+        profile.setDistanceKm(distance);
+        profile.setMatchPercent(matchPercent(viewer, profile));
+    }
+
+    private static int matchPercent(@Nullable UserProfile viewer, @NonNull UserProfile profile) {
+        return viewer == null ? 0 : InterestVocabulary.matchPercent(
+                viewer.getInterestBits(), viewer.getInterestCount(), profile.getInterestBits());
+    }
+
+    @Nullable
+    private static GeoDistance.Viewer viewerOf(@Nullable UserProfile viewer) {
+        if (viewer == null || viewer.getLatitude() == null || viewer.getLongitude() == null) {
+            return null;
+        }
+        return new GeoDistance.Viewer(viewer.getLatitude(), viewer.getLongitude());
+    }
+}
@@ -0,0 +1,61 @@
+package com.retroxinteractive.amora;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * How far a room in {@link MessageStore} is synced: every message up to and including
+ * ({@link #timestamp}, {@link #id}) was fetched from Firebase without gaps.
+ *
+ * Catch-up resumes after the mark, not after the newest stored row: a message the outbox
+ * delivered while the chat was closed is stored too, but the peer's messages from before
+ * it were not, and starting after it would skip them for good. Stored rows past the mark
+ * are not read back; catch-up fetches them again in order.
+ *
+ * Same order as Firebase's orderByChild("timestamp"): timestamp, then key.
+ */
+public final class SyncMark {
+
+    public final long timestamp;
+    @NonNull public final String id;
+
+    public SyncMark(long timestamp, @NonNull String id) {
+        this.timestamp = timestamp;
+        this.id = id;
+    }
+
+    /** Whether {@code m} is at or before this mark, i.e. inside the synced run. */
+    public boolean covers(@NonNull Message m) {
+        return m.getTimestamp() < timestamp
+                || (m.getTimestamp() == timestamp && m.getId().compareTo(id) <= 0);
+    }
+
+    /** The messages startAfter(mark) returns, in order; everything when there is no mark. */
+    @NonNull
+    static List<Message> after(@Nullable SyncMark mark, @NonNull List<Message> ordered) {
+        List<Message> result = new ArrayList<>();
+        for (Message m : ordered) {
+            if (mark == null || !mark.covers(m)) result.add(m);
+        }
+        return result;
+    }
+
+    /**
+     * The mark after a contiguous batch from the catch-up / live query was stored: its
+     * newest message, unless the current mark is already further.
+     */
+    @Nullable
+    static SyncMark advance(@Nullable SyncMark mark, @NonNull List<Message> synced) {
+        SyncMark result = mark;
+        for (Message m : synced) {
+            if (m.getId() == null) continue;
+            if (result == null || !result.covers(m)) {
+                result = new SyncMark(m.getTimestamp(), m.getId());
+            }
+        }
+        return result;
+    }
+}
@@ -1,6 +1,11 @@
 package com.retroxinteractive.amora;
 
+import com.google.firebase.database.Exclude;
+
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 public class UserProfile {
 
@@ -11,10 +16,18 @@ public class UserProfile {
     private String bio;
     private String address;
     private String photoUrl;
+    private Map<String, String> photoThumbs; // size ("128", "400", "1080") → url; optional
     private Boolean verified;
     private Double distanceKm;       // optional; can be null
     private Integer matchPercent;    // optional
     private List<String> interests;  // optional
+    private Double latitude;         // optional
+    private Double longitude;        // optional
+    private Long updatedAt;          // server timestamp of the last profile edit
+
+    // Interests as InterestVocabulary ids; derived on the client, never stored
+    private long[] interestBits = new long[0];
+    private int interestCount = 0;
 
     // Required empty constructor for Firebase
     public UserProfile() {
@@ -40,6 +53,9 @@ public class UserProfile {
     public String getPhotoUrl() { return photoUrl; }
     public void setPhotoUrl(String photoUrl) { this.photoUrl = photoUrl; }
 
+    public Map<String, String> getPhotoThumbs() { return photoThumbs; }
+    public void setPhotoThumbs(Map<String, String> photoThumbs) { this.photoThumbs = photoThumbs; }
+
     public Boolean getVerified() { return verified != null && verified; }
     public void setVerified(Boolean verified) { this.verified = verified; }
 
@@ -51,4 +67,74 @@ public class UserProfile {
 
     public List<String> getInterests() { return interests; }
     public void setInterests(List<String> interests) { this.interests = interests; }
-}
\ No newline at end of file
+
+    public Double getLatitude() { return latitude; }
+    public void setLatitude(Double latitude) { this.latitude = latitude; }
+
+    public Double getLongitude() { return longitude; }
+    public void setLongitude(Double longitude) { this.longitude = longitude; }
+
+    public Long getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(Long updatedAt) { this.updatedAt = updatedAt; }
+
+    @Exclude
+    public long[] getInterestBits() { return interestBits; }
+
+    @Exclude
+    public int getInterestCount() { return interestCount; }
+
+    /**
+     * Sets interests and their bitset together so the two never disagree.
+     */
+    @Exclude
+    public void setInterestsIndexed(List<String> interests) {
+        this.interests = interests;
+        this.interestBits = InterestVocabulary.toBits(interests);
+        this.interestCount = InterestVocabulary.count(interestBits);
+    }
+
+    /**
+     * Shallow copy; the interests list is copied so the two can diverge safely.
+     */
+    public UserProfile copy() {
+        UserProfile p = new UserProfile();
+        p.uid = uid;
+        p.name = name;
+        p.age = age;
+        p.bio = bio;
+        p.address = address;
+        p.photoUrl = photoUrl;
+        p.photoThumbs = photoThumbs;     // never mutated after creation
+        p.verified = verified;
+        p.distanceKm = distanceKm;
+        p.matchPercent = matchPercent;
+        p.interests = interests != null ? new ArrayList<>(interests) : null;
+        p.interestBits = interestBits;   // never mutated after creation
+        p.interestCount = interestCount;
+        p.latitude = latitude;
+        p.longitude = longitude;
+        p.updatedAt = updatedAt;
+        return p;
+    }
+
+    /**
+     * True if everything a profile card shows (and scores on) is equal.
+     */
+    public boolean hasSameContent(UserProfile other) {
+        if (other == null) return false;
+        return Objects.equals(uid, other.uid)
+                && Objects.equals(name, other.name)
+                && Objects.equals(age, other.age)
+                && Objects.equals(bio, other.bio)
+                && Objects.equals(address, other.address)
+                && Objects.equals(photoUrl, other.photoUrl)
+                && Objects.equals(photoThumbs, other.photoThumbs)
+                && getVerified().equals(other.getVerified())
+                && Objects.equals(distanceKm, other.distanceKm)
+                && Objects.equals(matchPercent, other.matchPercent)
+                && Objects.equals(interests, other.interests)
+                && Objects.equals(latitude, other.latitude)
+                && Objects.equals(longitude, other.longitude)
+                && Objects.equals(updatedAt, other.updatedAt);
+    }
+}
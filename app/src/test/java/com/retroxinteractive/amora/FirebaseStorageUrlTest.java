@@ -0,0 +1,35 @@
+package com.retroxinteractive.amora;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link FirebaseStorageUrl#stripToken(String)}.
+ */
+public class FirebaseStorageUrlTest {
+    private static final String BASE =
+            "https://firebasestorage.googleapis.com/v0/b/amora.appspot.com/o/user_photos%2Fu1%2Fphoto_1.jpg";
+
+    @Test
+    public void stripToken_rotatedTokensShareOneKey() {
+        String a = FirebaseStorageUrl.stripToken(BASE + "?alt=media&token=aaa");
+        String b = FirebaseStorageUrl.stripToken(BASE + "?alt=media&token=bbb");
+
+        assertEquals(BASE + "?alt=media", a);
+        assertEquals(a, b);
+    }
+
+    @Test
+    public void stripToken_keepsOtherParameters() {
+        assertEquals(BASE + "?alt=media", FirebaseStorageUrl.stripToken(BASE + "?token=t&alt=media"));
+        assertEquals(BASE, FirebaseStorageUrl.stripToken(BASE + "?token=t"));
+        assertEquals(BASE, FirebaseStorageUrl.stripToken(BASE));
+    }
+
+    @Test
+    public void handles_onlyStorageUrls() {
+        assertTrue(FirebaseStorageUrl.handles(BASE));
+        assertFalse(FirebaseStorageUrl.handles("https://example.com/a.jpg"));
+    }
+}
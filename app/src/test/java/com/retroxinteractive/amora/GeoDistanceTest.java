@@ -0,0 +1,44 @@
+package com.retroxinteractive.amora;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link GeoDistance}.
+ */
+public class GeoDistanceTest {
+    @Test
+    public void haversine_knownDistance() {
+        // Karachi → Lahore, roughly 1030 km
+        assertEquals(1030, GeoDistance.haversineKm(24.8607, 67.0011, 31.5204, 74.3587), 15);
+    }
+
+    @Test
+    public void fastPath_closeToHaversine() {
+        GeoDistance.Viewer viewer = new GeoDistance.Viewer(51.5074, -0.1278);
+        double lat = 51.55, lng = -0.05;
+        double exact = GeoDistance.haversineKm(51.5074, -0.1278, lat, lng);
+        assertTrue(exact < GeoDistance.FAST_PATH_MAX_KM);
+        assertEquals(exact, viewer.distanceKm(lat, lng), exact * 0.003);
+    }
+
+    @Test
+    public void batch_matchesSingleCalls() {
+        GeoDistance.Viewer viewer = new GeoDistance.Viewer(24.8607, 67.0011);
+        double[] lats = {24.87, 31.5204, Double.NaN};
+        double[] lngs = {67.02, 74.3587, Double.NaN};
+        double[] out = new double[3];
+        viewer.distancesKm(lats, lngs, 3, out);
+
+        assertEquals(viewer.distanceKm(lats[0], lngs[0]), out[0], 1e-9);
+        assertEquals(viewer.distanceKm(lats[1], lngs[1]), out[1], 1e-9);
+        assertTrue(Double.isNaN(out[2]));
+    }
+
+    @Test
+    public void antimeridian_isShortWayRound() {
+        GeoDistance.Viewer viewer = new GeoDistance.Viewer(0, 179.99);
+        assertEquals(2.2, viewer.distanceKm(0, -179.99), 0.1);
+    }
+}
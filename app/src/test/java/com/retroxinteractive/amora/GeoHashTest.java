@@ -0,0 +1,33 @@
+package com.retroxinteractive.amora;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link GeoHash}.
+ */
+public class GeoHashTest {
+    @Test
+    public void encode_matchesReferenceHash() {
+        assertEquals("u4pruydqqvj", GeoHash.encode(57.64911, 10.40744, 11));
+    }
+
+    @Test
+    public void coveringCells_containCenterPrefix() {
+        double lat = 24.8607, lng = 67.0011;
+        String full = GeoHash.encode(lat, lng, GeoHash.STORED_PRECISION);
+
+        List<String> cells = GeoHash.coveringCells(lat, lng, 5.0);
+        assertFalse(cells.isEmpty());
+        assertTrue(cells.size() <= 9);
+
+        boolean covered = false;
+        for (String cell : cells) {
+            if (full.startsWith(cell)) covered = true;
+        }
+        assertTrue(covered);
+    }
+}
@@ -0,0 +1,19 @@
+package com.retroxinteractive.amora;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link ImagePreprocessor#sampleSizeFor(int, int, int)}.
+ */
+public class ImagePreprocessorTest {
+    @Test
+    public void sampleSize_keepsLongestEdgeAboveCap() {
+        // 12 MP camera photo → decode at 1/2 (2016 px), then scale to 1600
+        assertEquals(2, ImagePreprocessor.sampleSizeFor(4032, 3024, 1600));
+        assertEquals(4, ImagePreprocessor.sampleSizeFor(8000, 6000, 1600));
+        assertEquals(1, ImagePreprocessor.sampleSizeFor(1200, 900, 1600));
+        assertEquals(1, ImagePreprocessor.sampleSizeFor(3000, 2000, 1600));
+    }
+}
@@ -0,0 +1,35 @@
+package com.retroxinteractive.amora;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link ImageVariants#pick(String, Map, int)}.
+ */
+public class ImageVariantsTest {
+    @Test
+    public void pick_smallestVariantCoveringTheView() {
+        Map<String, String> variants = new HashMap<>();
+        variants.put("128", "s");
+        variants.put("400", "m");
+        variants.put("1080", "l");
+
+        assertEquals("s", ImageVariants.pick("orig", variants, 96));
+        assertEquals("m", ImageVariants.pick("orig", variants, 400));
+        assertEquals("l", ImageVariants.pick("orig", variants, 540));
+        assertEquals("orig", ImageVariants.pick("orig", variants, 1440));
+    }
+
+    @Test
+    public void pick_fallsBackToOriginal() {
+        assertEquals("orig", ImageVariants.pick("orig", null, 400));
+
+        Map<String, String> partial = new HashMap<>();
+        partial.put("1080", "l");
+        assertEquals("l", ImageVariants.pick("orig", partial, 128));
+    }
+}
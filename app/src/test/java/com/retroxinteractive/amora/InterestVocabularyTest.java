@@ -0,0 +1,29 @@
+package com.retroxinteractive.amora;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link InterestVocabulary}.
+ */
+public class InterestVocabularyTest {
+    @Test
+    public void intern_isCaseAndWhitespaceInsensitive() {
+        assertEquals(InterestVocabulary.intern("Music"), InterestVocabulary.intern("  music "));
+        assertEquals(-1, InterestVocabulary.intern("   "));
+    }
+
+    @Test
+    public void matchPercent_countsSharedInterests() {
+        long[] mine = InterestVocabulary.toBits(Arrays.asList("Art", "Music", "Travel"));
+        long[] theirs = InterestVocabulary.toBits(Arrays.asList("music", "Cooking"));
+
+        int myCount = InterestVocabulary.count(mine);
+        assertEquals(3, myCount);
+        assertEquals(33, InterestVocabulary.matchPercent(mine, myCount, theirs));
+        assertEquals(0, InterestVocabulary.matchPercent(new long[0], 0, theirs));
+    }
+}
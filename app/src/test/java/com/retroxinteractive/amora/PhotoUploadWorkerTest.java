@@ -0,0 +1,52 @@
+package com.retroxinteractive.amora;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the commit built by {@link PhotoUploadWorker}.
+ */
+public class PhotoUploadWorkerTest {
+    @Test
+    public void photoKey_matchesThumbnailFunction() {
+        assertEquals("photo_123", PhotoUploadWorker.photoKey("photo_123.jpg"));
+        assertEquals("a_b", PhotoUploadWorker.photoKey("a.b.img"));
+        // Push keys pass through unchanged, so they keep their time order
+        assertEquals("-NbXyZ_09", PhotoUploadWorker.photoKey("-NbXyZ_09.jpg"));
+    }
+
+    @Test
+    public void buildCommit_profilePhotoBecomesMain() {
+        String[] names = {"photo_1.jpg"};
+        String[] urls = {"u1"};
+
+        Map<String, Object> update = PhotoUploadWorker.buildCommit(
+                "me", PhotoUploadWorker.KIND_PROFILE, names, urls);
+
+        assertEquals("u1", update.get("users/me/profileImageUrl"));
+        assertEquals("u1", update.get("profileCards/me/profileImageUrl"));
+        // Cleared with the URL so cards never show the previous photo's thumbnails
+        assertTrue(update.containsKey("users/me/profileImageThumbs"));
+        assertNull(update.get("profileCards/me/profileImageThumbs"));
+        assertFalse(update.containsKey("users/me/photos/photo_1"));
+        assertTrue(update.containsKey("profileCards/me/updatedAt"));
+    }
+
+    @Test
+    public void buildCommit_extraPhotosKeyedByObjectName() {
+        String[] names = {"-Nb1.jpg", "-Nb2.jpg", "-Nb3.jpg"};
+        String[] urls = {"u1", null, "u3"};
+
+        Map<String, Object> update = PhotoUploadWorker.buildCommit(
+                "me", PhotoUploadWorker.KIND_PHOTOS, names, urls);
+
+        assertEquals("u1", update.get("users/me/photos/-Nb1"));
+        assertFalse(update.containsKey("users/me/photos/-Nb2"));
+        assertEquals("u3", update.get("users/me/photos/-Nb3"));
+        // Gallery uploads never become the main photo: user_photos/ gets no thumbnails
+        assertFalse(update.containsKey("users/me/profileImageUrl"));
+    }
+}
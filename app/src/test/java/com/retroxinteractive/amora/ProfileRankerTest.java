@@ -0,0 +1,129 @@
+package com.retroxinteractive.amora;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link ProfileRanker}.
+ */
+public class ProfileRankerTest {
+
+    private static UserProfile profile(String uid, int match, Double distanceKm, boolean verified) {
+        UserProfile p = new UserProfile();
+        p.setUid(uid);
+        p.setMatchPercent(match);
+        p.setDistanceKm(distanceKm);
+        p.setVerified(verified);
+        return p;
+    }
+
+    @Test
+    public void topK_returnsBestFirstAndIsBounded() {
+        List<UserProfile> candidates = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            candidates.add(profile("u" + i, i % 101, null, false));
+        }
+        Collections.shuffle(candidates);
+
+        List<UserProfile> top = new ProfileRanker()
+                .with(ProfileRanker.interestOverlap(), 1.0)
+                .topK(candidates, 10);
+
+        assertEquals(10, top.size());
+        for (int i = 1; i < top.size(); i++) {
+            assertTrue(top.get(i - 1).getMatchPercent() >= top.get(i).getMatchPercent());
+        }
+        assertEquals(100, (int) top.get(0).getMatchPercent());
+    }
+
+    @Test
+    public void nearestFirst_putsUnknownDistanceLast() {
+        List<UserProfile> candidates = new ArrayList<>();
+        candidates.add(profile("far", 0, 40.0, false));
+        candidates.add(profile("unknown", 0, null, false));
+        candidates.add(profile("near", 0, 1.5, false));
+
+        List<UserProfile> ranked = ProfileRanker.nearestFirst().topK(candidates, 3);
+        assertEquals("near", ranked.get(0).getUid());
+        assertEquals("far", ranked.get(1).getUid());
+        assertEquals("unknown", ranked.get(2).getUid());
+    }
+
+    @Test
+    public void nearestFirst_ordersByDistanceBeyondProximityRange() {
+        List<UserProfile> candidates = new ArrayList<>();
+        candidates.add(profile("d150", 10, 150.0, false));
+        candidates.add(profile("d500", 40, 500.0, false));
+        candidates.add(profile("d120", 0, 120.0, false));
+        candidates.add(profile("d3000", 100, 3000.0, false));
+
+        List<UserProfile> ranked = ProfileRanker.nearestFirst().topK(candidates, 4);
+        assertEquals("d120", ranked.get(0).getUid());
+        assertEquals("d150", ranked.get(1).getUid());
+        assertEquals("d500", ranked.get(2).getUid());
+        assertEquals("d3000", ranked.get(3).getUid());
+    }
+
+    @Test
+    public void nearestFirst_breaksDistanceTiesByInterests() {
+        List<UserProfile> candidates = new ArrayList<>();
+        candidates.add(profile("a", 20, 5.0, false));
+        candidates.add(profile("b", 80, 5.0, false));
+
+        assertEquals("b", ProfileRanker.nearestFirst().topK(candidates, 2).get(0).getUid());
+    }
+
+    @Test
+    public void extend_keepsShownOrderAndAppendsBestOfRest() {
+        List<UserProfile> candidates = new ArrayList<>();
+        candidates.add(profile("low", 10, null, false));
+        candidates.add(profile("mid", 50, null, false));
+        candidates.add(profile("new", 90, null, false));   // arrived with the next page
+        candidates.add(profile("next", 70, null, false));
+
+        List<String> shown = new ArrayList<>();
+        shown.add("mid");
+        shown.add("low");
+        shown.add("gone");                                // deleted since it was shown
+
+        List<UserProfile> ranked = ProfileRanker.forYou().extend(shown, candidates, 4);
+        assertEquals(4, ranked.size());
+        assertEquals("mid", ranked.get(0).getUid());
+        assertEquals("low", ranked.get(1).getUid());
+        assertEquals("new", ranked.get(2).getUid());
+        assertEquals("next", ranked.get(3).getUid());
+    }
+
+    @Test
+    public void ties_keepUidOrder() {
+        List<UserProfile> candidates = new ArrayList<>();
+        candidates.add(profile("c", 50, null, true));
+        candidates.add(profile("a", 50, null, true));
+        candidates.add(profile("b", 50, null, true));
+
+        List<UserProfile> ranked = ProfileRanker.verifiedFirst().topK(candidates, 2);
+        assertEquals(2, ranked.size());
+        assertEquals("a", ranked.get(0).getUid());
+        assertEquals("b", ranked.get(1).getUid());
+    }
+
+    @Test
+    public void recency_decaysWithAge() {
+        long now = 1_000_000_000L;
+        UserProfile fresh = profile("fresh", 0, null, false);
+        fresh.setUpdatedAt(now);
+        UserProfile old = profile("old", 0, null, false);
+        old.setUpdatedAt(now - ProfileRanker.RECENCY_HALF_LIFE_MS);
+
+        ProfileRanker.Scorer recency =
+                ProfileRanker.recency(now, ProfileRanker.RECENCY_HALF_LIFE_MS);
+        assertEquals(1.0, recency.score(fresh), 1e-9);
+        assertEquals(0.5, recency.score(old), 1e-9);
+        assertEquals(0.0, recency.score(profile("never", 0, null, false)), 1e-9);
+    }
+}
@@ -0,0 +1,53 @@
+package com.retroxinteractive.amora;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link SyncMark}, the chat catch-up position.
+ */
+public class SyncMarkTest {
+    private static Message msg(String id, long ts) {
+        return new Message(id, "s", "r", "t", ts);
+    }
+
+    @Test
+    public void catchUp_fetchesPeerMessagesBehindAMessageDeliveredWhileClosed() {
+        Message seen = msg("a", 100);       // last message the chat screen synced
+        Message peer = msg("b", 200);       // peer wrote while the chat was closed
+        Message delivered = msg("c", 300);  // our outbox message, delivered by the worker
+        List<Message> server = Arrays.asList(seen, peer, delivered);
+
+        // The store now holds seen + delivered, but the mark stays where the sync stopped
+        SyncMark mark = SyncMark.advance(null, Collections.singletonList(seen));
+
+        // Resuming after the newest stored row (the old behaviour) skips the peer for good
+        SyncMark newestStored = new SyncMark(delivered.getTimestamp(), delivered.getId());
+        assertTrue(SyncMark.after(newestStored, server).isEmpty());
+
+        // Resuming after the mark fetches both, in order
+        assertEquals(Arrays.asList(peer, delivered), SyncMark.after(mark, server));
+        assertFalse(mark.covers(delivered)); // not read back from the store until then
+    }
+
+    @Test
+    public void advance_movesToNewestAndNeverBack() {
+        SyncMark mark = SyncMark.advance(null, Arrays.asList(msg("a", 100), msg("b", 200)));
+        assertEquals(200, mark.timestamp);
+        assertEquals("b", mark.id);
+
+        assertSame(mark, SyncMark.advance(mark, Collections.singletonList(msg("x", 150))));
+        assertEquals("c", SyncMark.advance(mark, Collections.singletonList(msg("c", 200))).id);
+    }
+
+    @Test
+    public void emptyRoomMark_coversNothing() {
+        SyncMark start = new SyncMark(0, "");
+        assertFalse(start.covers(msg("a", 1)));
+    }
+}
@@ -0,0 +1,171 @@
+/**
+ * Pure feed scoring (no Firebase access) so it can be unit tested without the emulator.
+ *
+ * Mirrors the client: match % as in InterestVocabulary.matchPercent, distance as in
+ * GeoDistance, and the weights of ProfileRanker.forYou().
+ */
+
+const EARTH_RADIUS_KM = 6371.0;
+
+/** Entries kept per /feeds/{uid}. */
+const FEED_SIZE = 100;
+
+/** Only users within this radius are considered (and it is where proximity hits 0). */
+const FEED_RADIUS_KM = 100.0;
+
+const RECENCY_HALF_LIFE_MS = 7 * 24 * 60 * 60 * 1000;
+
+const WEIGHTS = {
+    interests: 0.5,
+    proximity: 0.25,
+    verified: 0.15,
+    recency: 0.10,
+};
+
+/** The card fields a feed entry depends on; changes to anything else are ignored. */
+const FEED_FIELDS = [
+    "name", "age", "bio", "profileImageUrl", "profileImageThumbs", "verified", "interests",
+    "latitude", "longitude", "geohash", "profileCompleted", "updatedAt",
+];
+
+function normalizeInterests(interests) {
+    const out = new Set();
+    for (const interest of Object.values(interests || {})) {
+        if (typeof interest !== "string") continue;
+        const key = interest.trim().toLowerCase();
+        if (key) out.add(key);
+    }
+    return out;
+}
+
+function matchPercent(viewer, candidate) {
+    const mine = normalizeInterests(viewer.interests);
+    if (mine.size === 0) return 0;
+
+    let common = 0;
+    for (const interest of normalizeInterests(candidate.interests)) {
+        if (mine.has(interest)) common++;
+    }
+    return Math.floor((common * 100 + Math.floor(mine.size / 2)) / mine.size);
+}
+
+function hasLocation(user) {
+    return typeof user.latitude === "number" && typeof user.longitude === "number";
+}
+
+function distanceKm(a, b) {
+    if (!hasLocation(a) || !hasLocation(b)) return null;
+
+    const toRad = Math.PI / 180;
+    const dLat = (b.latitude - a.latitude) * toRad;
+    const dLng = (b.longitude - a.longitude) * toRad;
+    const h = Math.sin(dLat / 2) ** 2
+        + Math.cos(a.latitude * toRad) * Math.cos(b.latitude * toRad) * Math.sin(dLng / 2) ** 2;
+    return 2 * EARTH_RADIUS_KM * Math.atan2(Math.sqrt(h), Math.sqrt(1 - h));
+}
+
+/** True if the user should appear in anyone's feed. */
+function isListable(user) {
+    return !!user && user.profileCompleted !== false;
+}
+
+/**
+ * Scores candidate for viewer. Returns null when the candidate doesn't belong in the
+ * feed at all (self, incomplete, or outside FEED_RADIUS_KM).
+ */
+function scoreCandidate(viewer, viewerUid, candidate, candidateUid, nowMs) {
+    if (candidateUid === viewerUid || !isListable(candidate)) return null;
+
+    const distance = distanceKm(viewer, candidate);
+    if (distance !== null && distance > FEED_RADIUS_KM) return null;
+
+    const match = matchPercent(viewer, candidate);
+    const proximity = distance === null ? 0 : Math.max(0, 1 - distance / FEED_RADIUS_KM);
+    const verified = candidate.verified === true ? 1 : 0;
+    const recency = typeof candidate.updatedAt === "number"
+        ? Math.pow(0.5, Math.max(0, nowMs - candidate.updatedAt) / RECENCY_HALF_LIFE_MS)
+        : 0;
+
+    const score = WEIGHTS.interests * (match / 100)
+        + WEIGHTS.proximity * proximity
+        + WEIGHTS.verified * verified
+        + WEIGHTS.recency * recency;
+
+    return {score, distanceKm: distance, matchPercent: match};
+}
+
+/** What the client needs to draw a card, plus the scores it was ranked with. */
+function toEntry(candidate, scored) {
+    const entry = {
+        score: scored.score,
+        matchPercent: scored.matchPercent,
+        name: candidate.name || "",
+        age: candidate.age || "",
+        bio: candidate.bio || "",
+        profileImageUrl: candidate.profileImageUrl || "",
+        verified: candidate.verified === true,
+        interests: Object.values(candidate.interests || {}),
+    };
+    if (scored.distanceKm !== null) entry.distanceKm = scored.distanceKm;
+    if (hasLocation(candidate)) {
+        entry.latitude = candidate.latitude;
+        entry.longitude = candidate.longitude;
+    }
+    if (candidate.profileImageThumbs) entry.profileImageThumbs = candidate.profileImageThumbs;
+    if (typeof candidate.updatedAt === "number") entry.updatedAt = candidate.updatedAt;
+    return entry;
+}
+
+/**
+ * Full feed for viewer from a {uid: user} map: best FEED_SIZE entries keyed by uid.
+ */
+function buildFeed(viewer, viewerUid, users, nowMs) {
+    const scored = [];
+    for (const [uid, user] of Object.entries(users || {})) {
+        const s = scoreCandidate(viewer, viewerUid, user, uid, nowMs);
+        if (s) scored.push({uid, user, s});
+    }
+    scored.sort((a, b) => b.s.score - a.s.score || (a.uid < b.uid ? -1 : 1));
+
+    const entries = {};
+    for (const {uid, user, s} of scored.slice(0, FEED_SIZE)) {
+        entries[uid] = toEntry(user, s);
+    }
+    return entries;
+}
+
+/**
+ * Applies one candidate's change to an existing feed (entries keyed by uid).
+ * entry === null removes the candidate. Returns the new entries, truncated to FEED_SIZE.
+ */
+function mergeEntry(entries, candidateUid, entry) {
+    const next = Object.assign({}, entries || {});
+    delete next[candidateUid];
+    if (entry) next[candidateUid] = entry;
+
+    const uids = Object.keys(next);
+    if (uids.length <= FEED_SIZE) return next;
+
+    uids.sort((a, b) => next[b].score - next[a].score || (a < b ? -1 : 1));
+    for (const uid of uids.slice(FEED_SIZE)) delete next[uid];
+    return next;
+}
+
+/** True if any field a feed depends on differs between the two versions of a user. */
+function feedFieldsChanged(before, after) {
+    if (!before || !after) return before !== after;
+    return FEED_FIELDS.some((f) => JSON.stringify(before[f]) !== JSON.stringify(after[f]));
+}
+
+module.exports = {
+    FEED_SIZE,
+    FEED_RADIUS_KM,
+    matchPercent,
+    distanceKm,
+    isListable,
+    scoreCandidate,
+    toEntry,
+    buildFeed,
+    mergeEntry,
+    feedFieldsChanged,
+};
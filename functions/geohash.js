@@ -0,0 +1,100 @@
+/**
+ * Geohash helpers, kept in step with GeoHash.java on the client so both sides
+ * agree on which cells cover a search radius.
+ */
+
+const BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz";
+const KM_PER_DEGREE_LAT = 111.32;
+const STORED_PRECISION = 10;
+
+function encode(latitude, longitude, precision) {
+    let minLat = -90, maxLat = 90;
+    let minLng = -180, maxLng = 180;
+
+    let hash = "";
+    let evenBit = true; // even bits encode longitude
+    let bit = 0;
+    let ch = 0;
+
+    while (hash.length < precision) {
+        if (evenBit) {
+            const mid = (minLng + maxLng) / 2;
+            if (longitude >= mid) {
+                ch = (ch << 1) | 1;
+                minLng = mid;
+            } else {
+                ch = ch << 1;
+                maxLng = mid;
+            }
+        } else {
+            const mid = (minLat + maxLat) / 2;
+            if (latitude >= mid) {
+                ch = (ch << 1) | 1;
+                minLat = mid;
+            } else {
+                ch = ch << 1;
+                maxLat = mid;
+            }
+        }
+        evenBit = !evenBit;
+
+        if (++bit === 5) {
+            hash += BASE32.charAt(ch);
+            bit = 0;
+            ch = 0;
+        }
+    }
+    return hash;
+}
+
+/**
+ * Geohash prefixes whose cells together cover a circle of radiusKm (at most 9).
+ */
+function coveringCells(latitude, longitude, radiusKm) {
+    const dLat = radiusKm / KM_PER_DEGREE_LAT;
+    const cosLat = Math.cos(latitude * Math.PI / 180);
+    const dLng = cosLat < 1e-6 ? 180 : Math.min(180, dLat / cosLat);
+
+    const precision = precisionFor(dLat, dLng);
+
+    const cells = new Set();
+    for (let i = -1; i <= 1; i++) {
+        const lat = clampLatitude(latitude + i * dLat);
+        for (let j = -1; j <= 1; j++) {
+            const lng = wrapLongitude(longitude + j * dLng);
+            cells.add(encode(lat, lng, precision));
+        }
+    }
+    return [...cells];
+}
+
+/**
+ * Largest precision whose cell is still at least dLat x dLng degrees.
+ */
+function precisionFor(dLat, dLng) {
+    let precision = 1;
+    for (let p = 1; p <= STORED_PRECISION; p++) {
+        const bits = p * 5;
+        const lngBits = Math.floor((bits + 1) / 2);
+        const latBits = Math.floor(bits / 2);
+        const cellLng = 360 / Math.pow(2, lngBits);
+        const cellLat = 180 / Math.pow(2, latBits);
+        if (cellLat < dLat || cellLng < dLng) {
+            break;
+        }
+        precision = p;
+    }
+    return precision;
+}
+
+function clampLatitude(lat) {
+    return Math.max(-90, Math.min(89.999999, lat));
+}
+
+function wrapLongitude(lng) {
+    if (lng >= 180) return lng - 360;
+    if (lng < -180) return lng + 360;
+    return lng;
+}
+
+module.exports = {encode, coveringCells, precisionFor, STORED_PRECISION};
@@ -1,10 +1,19 @@
 /**
- * Chat Notification Function for Amora App (Gen2)
- * Trigger: Realtime Database value created at /chats/{roomId}/{messageId}
+ * Cloud Functions for Amora App (Gen2)
+ * - onChatMessageCreated: chat notifications, /chats/{roomId}/{messageId}
+ * - onUserProfileWritten: precomputed candidate feeds, /profileCards/{uid} → /feeds/{uid}
+ * - onImageUploaded: WebP thumbnails for profile_images/ and user_photos/ uploads
  */
 
-const {onValueCreated} = require("firebase-functions/v2/database");
+const {onValueCreated, onValueWritten} = require("firebase-functions/v2/database");
+const {onObjectFinalized} = require("firebase-functions/v2/storage");
 const admin = require("firebase-admin");
+const {getDownloadURL} = require("firebase-admin/storage");
+const crypto = require("crypto");
+const sharp = require("sharp");
+const thumbnails = require("./thumbnails");
+const geohash = require("./geohash");
+const feedScoring = require("./feedScoring");
 
 // Initialize Firebase Admin SDK ONCE
 if (!admin.apps.length) {
@@ -90,3 +99,198 @@ exports.onChatMessageCreated = onValueCreated("/chats/{roomId}/{messageId}", asy
         console.error("Error sending notification:", err);
     }
 });
+
+/**
+ * onUserProfileWritten (2nd gen)
+ * Trigger path: /profileCards/{uid} (the compact card the app writes next to /users/{uid})
+ *
+ * Keeps /feeds/{uid} = {candidateUid: entry} up to date incrementally:
+ * - the changed user's own feed is rebuilt from the users around them;
+ * - in every neighbour's existing feed only the changed user's entry is inserted,
+ *   re-scored or dropped (then truncated to FEED_SIZE).
+ * Writes that don't change any feed field are ignored.
+ *
+ * A deleted card leaves a /deletedCards/{uid} tombstone (server time) so clients' delta
+ * sync drops it from their caches; re-creating the card clears it.
+ */
+exports.onUserProfileWritten = onValueWritten("/profileCards/{uid}", async (event) => {
+    const uid = event.params.uid;
+    const before = event.data.before.val();
+    const after = event.data.after.val();
+
+    if (before && !after) {
+        await admin.database().ref(`/deletedCards/${uid}`).set(admin.database.ServerValue.TIMESTAMP);
+    } else if (!before && after) {
+        await admin.database().ref(`/deletedCards/${uid}`).remove();
+    }
+
+    if (!feedScoring.feedFieldsChanged(before, after)) {
+        return;
+    }
+
+    const now = Date.now();
+    const db = admin.database();
+
+    // Neighbours at the old and new position: both may need this user's entry updated
+    const moved = !before || !after
+        || before.latitude !== after.latitude || before.longitude !== after.longitude;
+    const nearAfter = await loadUsersNear(after);
+    const nearBefore = moved ? await loadUsersNear(before) : {};
+    const neighbours = Object.assign({}, nearBefore, nearAfter);
+    delete neighbours[uid];
+
+    // 1) This user's own feed
+    if (feedScoring.isListable(after) && after.geohash) {
+        await db.ref(`/feeds/${uid}`).set(feedScoring.buildFeed(after, uid, nearAfter, now));
+    } else {
+        await db.ref(`/feeds/${uid}`).remove();
+    }
+
+    // 2) This user's entry in everyone else's feed
+    await Promise.all(Object.entries(neighbours).map(([viewerUid, viewer]) => {
+        const scored = after
+            ? feedScoring.scoreCandidate(viewer, viewerUid, after, uid, now)
+            : null;
+        const entry = scored ? feedScoring.toEntry(after, scored) : null;
+
+        return db.ref(`/feeds/${viewerUid}`).transaction((current) => {
+            // Feeds are only created by their owner's trigger; also the first
+            // (cached) call may see null before the server value arrives
+            if (current === null) return null;
+
+            if (!entry && !current[uid]) return; // not in the feed, nothing to drop
+            return feedScoring.mergeEntry(current, uid, entry);
+        });
+    }));
+});
+
+/**
+ * Cards whose geohash falls in the cells covering FEED_RADIUS_KM around user.
+ * Returns {} when user is missing or has no location.
+ */
+async function loadUsersNear(user) {
+    if (!user || typeof user.latitude !== "number" || typeof user.longitude !== "number") {
+        return {};
+    }
+
+    const cells = geohash.coveringCells(
+        user.latitude, user.longitude, feedScoring.FEED_RADIUS_KM);
+
+    const snaps = await Promise.all(cells.map((cell) => admin.database()
+        .ref("/profileCards")
+        .orderByChild("geohash")
+        .startAt(cell)
+        .endAt(cell + "\uf8ff")
+        .get()));
+
+    const users = {};
+    for (const snap of snaps) {
+        snap.forEach((child) => {
+            users[child.key] = child.val();
+        });
+    }
+    return users;
+}
+
+/**
+ * onImageUploaded (2nd gen)
+ * Trigger: Storage object finalized under profile_images/ or user_photos/
+ *
+ * Writes 128 / 400 / 1080 px WebP variants next to thumbs/ and publishes their download
+ * URLs on the user (and, for the main photo, the feed card) so cards can load the
+ * size they draw instead of the full upload.
+ *
+ * A main photo's thumbnails are only published while it is still the profile photo.
+ * If the client hasn't committed its URL yet the run fails and is retried, for up to
+ * thumbnails.COMMIT_WINDOW_MS after the upload. Once it is published, the main photos it
+ * replaced are deleted with their thumbnails; a photo that lost to a newer one deletes
+ * itself.
+ */
+exports.onImageUploaded = onObjectFinalized({memory: "1GiB", retry: true}, async (event) => {
+    const object = event.data;
+    const info = thumbnails.classify(object.name, object.contentType);
+    if (!info) {
+        return;
+    }
+    const created = Date.parse(object.timeCreated);
+    if (Date.now() - created > thumbnails.COMMIT_WINDOW_MS) {
+        console.warn(`Giving up on thumbnails for ${object.name}`);
+        return;
+    }
+
+    const bucket = admin.storage().bucket(object.bucket);
+    const [original] = await bucket.file(object.name).download();
+
+    const urls = {};
+    for (const size of thumbnails.SIZES) {
+        const webp = await sharp(original)
+            .rotate() // apply EXIF orientation before it is stripped
+            .resize(size, size, {fit: "inside", withoutEnlargement: true})
+            .webp({quality: 80})
+            .toBuffer();
+
+        const thumb = bucket.file(thumbnails.thumbPath(object.name, size));
+        await thumb.save(webp, {
+            resumable: false,
+            metadata: {
+                contentType: "image/webp",
+                cacheControl: "public, max-age=31536000",
+                metadata: {firebaseStorageDownloadTokens: crypto.randomUUID()},
+            },
+        });
+        urls[size] = await getDownloadURL(thumb);
+    }
+
+    if (info.kind !== "profile") {
+        await admin.database().ref().update(thumbnails.writeBack(info, urls));
+        console.log(`Thumbnails written for ${object.name}`);
+        return;
+    }
+
+    const publish = (current) => thumbnails.withProfileThumbs(
+        current, object.name, urls, admin.database.ServerValue.TIMESTAMP);
+    const user = await admin.database().ref(`users/${info.uid}`).transaction(publish);
+    if (user.committed && user.snapshot.exists()) {
+        await admin.database().ref(`profileCards/${info.uid}`).transaction(publish);
+        console.log(`Thumbnails written for ${object.name}`);
+        await deleteSuperseded(bucket, info.uid, {name: object.name, created});
+        return;
+    }
+
+    const currentPath = thumbnails.objectPathOf(user.snapshot.child("profileImageUrl").val());
+    const currentCreated = await uploadTime(bucket, currentPath);
+    if (thumbnails.awaitingCommit(created, currentCreated, Date.now())) {
+        throw new Error(`Profile photo ${object.name} not committed yet; retrying`);
+    }
+    if (currentCreated !== null) {
+        // A newer photo is on the profile; its run may have finished before this upload
+        await deleteObjects(bucket, thumbnails.withThumbPaths(object.name));
+    }
+    console.log(`Skipped thumbnails for superseded ${object.name}`);
+});
+
+/** Deletes the main photos (and thumbnails) of uid that current replaced. */
+async function deleteSuperseded(bucket, uid, current) {
+    const [files] = await bucket.getFiles({prefix: `profile_images/${uid}/`});
+    const stale = thumbnails.superseded(files.map((file) => ({
+        name: file.name,
+        created: Date.parse(file.metadata.timeCreated),
+    })), current);
+    await deleteObjects(bucket, stale.flatMap(thumbnails.withThumbPaths));
+}
+
+async function deleteObjects(bucket, names) {
+    await Promise.all(names.map((name) => bucket.file(name).delete({ignoreNotFound: true})));
+    if (names.length) console.log(`Deleted ${names.length} superseded objects`);
+}
+
+/** When a Storage object was uploaded (ms), or null if there is none. */
+async function uploadTime(bucket, objectPath) {
+    if (!objectPath) return null;
+    try {
+        const [metadata] = await bucket.file(objectPath).getMetadata();
+        return Date.parse(metadata.timeCreated);
+    } catch (e) {
+        return null; // deleted since; treat like no photo
+    }
+}
@@ -0,0 +1,62 @@
+const test = require("node:test");
+const assert = require("node:assert");
+
+const geohash = require("../geohash");
+const feedScoring = require("../feedScoring");
+
+const NOW = 1_700_000_000_000;
+
+function user(fields) {
+    return Object.assign({profileCompleted: true, latitude: 24.8607, longitude: 67.0011}, fields);
+}
+
+test("geohash matches the client encoding", () => {
+    assert.strictEqual(geohash.encode(57.64911, 10.40744, 11), "u4pruydqqvj");
+    assert.ok(geohash.coveringCells(24.8607, 67.0011, 5).length <= 9);
+});
+
+test("matchPercent rounds like InterestVocabulary", () => {
+    const me = {interests: ["Music", " art ", "Gaming"]};
+    assert.strictEqual(feedScoring.matchPercent(me, {interests: ["music", "Cooking"]}), 33);
+    assert.strictEqual(feedScoring.matchPercent(me, {interests: ["ART", "gaming"]}), 67);
+    assert.strictEqual(feedScoring.matchPercent({interests: []}, {interests: ["art"]}), 0);
+});
+
+test("buildFeed skips self, incomplete and far users and orders by score", () => {
+    const me = user({interests: ["art"]});
+    const users = {
+        me: me,
+        match: user({interests: ["Art"]}),
+        plain: user({interests: ["cooking"]}),
+        hidden: user({interests: ["art"], profileCompleted: false}),
+        far: user({interests: ["art"], latitude: 31.52, longitude: 74.35}),
+    };
+
+    const feed = feedScoring.buildFeed(me, "me", users, NOW);
+    assert.deepStrictEqual(Object.keys(feed).sort(), ["match", "plain"]);
+    assert.ok(feed.match.score > feed.plain.score);
+    assert.strictEqual(feed.match.matchPercent, 100);
+});
+
+test("mergeEntry inserts, replaces, drops and truncates", () => {
+    let entries = {};
+    for (let i = 0; i < feedScoring.FEED_SIZE; i++) {
+        entries["u" + i] = {score: i / 1000};
+    }
+
+    // Better than the weakest → weakest (u0) falls off
+    entries = feedScoring.mergeEntry(entries, "new", {score: 1});
+    assert.strictEqual(Object.keys(entries).length, feedScoring.FEED_SIZE);
+    assert.ok(entries.new);
+    assert.ok(!entries.u0);
+
+    entries = feedScoring.mergeEntry(entries, "new", null);
+    assert.ok(!entries.new);
+});
+
+test("feedFieldsChanged ignores token-only writes", () => {
+    const before = user({name: "A", fcmToken: "t1"});
+    assert.strictEqual(feedScoring.feedFieldsChanged(before, user({name: "A", fcmToken: "t2"})), false);
+    assert.strictEqual(feedScoring.feedFieldsChanged(before, user({name: "B", fcmToken: "t1"})), true);
+    assert.strictEqual(feedScoring.feedFieldsChanged(before, null), true);
+});
@@ -0,0 +1,63 @@
+/**
+ * Runs onUserProfileWritten against the Realtime Database emulator:
+ *   npm run test:emulator
+ * Skipped when no emulator is running.
+ */
+const test = require("node:test");
+const assert = require("node:assert");
+
+const emulated = !!process.env.FIREBASE_DATABASE_EMULATOR_HOST;
+
+test("profile write updates own and neighbour feeds", {skip: !emulated}, async () => {
+    const projectId = process.env.GCLOUD_PROJECT || "demo-amora";
+    const functionsTest = require("firebase-functions-test")({
+        projectId,
+        databaseURL: `http://${process.env.FIREBASE_DATABASE_EMULATOR_HOST}?ns=${projectId}`,
+    });
+    const admin = require("firebase-admin");
+    const geohash = require("../geohash");
+    const myFunctions = require("../index");
+    const db = admin.database();
+
+    const located = (fields) => Object.assign({
+        profileCompleted: true,
+        latitude: 24.8607,
+        longitude: 67.0011,
+        geohash: geohash.encode(24.8607, 67.0011, geohash.STORED_PRECISION),
+    }, fields);
+
+    try {
+        await db.ref().set({
+            profileCards: {
+                alice: located({name: "Alice", interests: ["art"]}),
+                bob: located({name: "Bob", interests: ["art", "music"]}),
+            },
+            // Bob already has a feed; Alice's change must be merged into it
+            feeds: {bob: {placeholder: {score: 0}}},
+        });
+
+        const wrapped = functionsTest.wrap(myFunctions.onUserProfileWritten);
+        const before = located({name: "Alice", interests: ["art"]});
+        const after = located({name: "Alice", interests: ["art", "music"]});
+        await db.ref("/profileCards/alice").set(after);
+
+        await wrapped({
+            data: functionsTest.makeChange(
+                functionsTest.database.makeDataSnapshot(before, "profileCards/alice"),
+                functionsTest.database.makeDataSnapshot(after, "profileCards/alice")),
+            params: {uid: "alice"},
+        });
+
+        const aliceFeed = (await db.ref("/feeds/alice").get()).val();
+        assert.deepStrictEqual(Object.keys(aliceFeed), ["bob"]);
+        assert.strictEqual(aliceFeed.bob.matchPercent, 100);
+
+        const bobFeed = (await db.ref("/feeds/bob").get()).val();
+        assert.ok(bobFeed.alice);
+        assert.ok(bobFeed.placeholder);
+    } finally {
+        await db.ref().remove();
+        functionsTest.cleanup();
+        await admin.app().delete();
+    }
+});
@@ -0,0 +1,82 @@
+const test = require("node:test");
+const assert = require("node:assert");
+
+const thumbnails = require("../thumbnails");
+
+test("classify only accepts original uploads", () => {
+    assert.deepStrictEqual(
+        thumbnails.classify("profile_images/u1/profile.jpg", "image/jpeg"),
+        {kind: "profile", uid: "u1", file: "profile.jpg"});
+    assert.strictEqual(
+        thumbnails.classify("user_photos/u1/17_img.jpg", "image/jpeg").kind, "photo");
+
+    assert.strictEqual(thumbnails.classify("thumbs/profile_images/u1/profile_128.webp", "image/webp"), null);
+    assert.strictEqual(thumbnails.classify("profile_images/u1/profile.jpg", "application/pdf"), null);
+    assert.strictEqual(thumbnails.classify("other/u1/a.jpg", "image/jpeg"), null);
+});
+
+test("thumbPath and photoKey", () => {
+    assert.strictEqual(thumbnails.thumbPath("user_photos/u1/17_a.b.jpg", 400),
+        "thumbs/user_photos/u1/17_a.b_400.webp");
+    assert.strictEqual(thumbnails.photoKey("17_a.b.jpg"), "17_a_b");
+});
+
+test("writeBack keys extra photos by file", () => {
+    const urls = {128: "s", 400: "m", 1080: "l"};
+    const photo = thumbnails.writeBack({kind: "photo", uid: "u1", file: "9_x.jpg"}, urls);
+    assert.deepStrictEqual(Object.keys(photo), ["users/u1/photoThumbs/9_x"]);
+});
+
+const URL_A = "https://firebasestorage.googleapis.com/v0/b/app.appspot.com/o/"
+    + "profile_images%2Fu1%2Fphoto_a.jpg?alt=media&token=t1";
+
+test("objectPathOf decodes download URLs", () => {
+    assert.strictEqual(thumbnails.objectPathOf(URL_A), "profile_images/u1/photo_a.jpg");
+    assert.strictEqual(thumbnails.objectPathOf(""), null);
+    assert.strictEqual(thumbnails.objectPathOf(undefined), null);
+});
+
+test("withProfileThumbs only publishes for the current photo", () => {
+    const urls = {128: "s"};
+    const current = {name: "A", profileImageUrl: URL_A, profileImageThumbs: {128: "old"}};
+
+    const next = thumbnails.withProfileThumbs(current, "profile_images/u1/photo_a.jpg", urls, 5);
+    assert.deepStrictEqual(next.profileImageThumbs, urls);
+    assert.strictEqual(next.updatedAt, 5);
+    assert.strictEqual(next.name, "A");
+
+    assert.strictEqual(
+        thumbnails.withProfileThumbs(current, "profile_images/u1/photo_b.jpg", urls, 5), undefined);
+    assert.strictEqual(thumbnails.withProfileThumbs(null, "x", urls, 5), null);
+});
+
+test("superseded picks older main photos only", () => {
+    const objects = [
+        {name: "profile_images/u1/a.jpg", created: 100},
+        {name: "profile_images/u1/b.jpg", created: 200},
+        {name: "profile_images/u1/c.jpg", created: 300}, // newer, commit may be pending
+    ];
+    assert.deepStrictEqual(
+        thumbnails.superseded(objects, {name: "profile_images/u1/b.jpg", created: 200}),
+        ["profile_images/u1/a.jpg"]);
+    assert.deepStrictEqual(
+        thumbnails.superseded(objects, {name: "profile_images/u1/a.jpg", created: 100}), []);
+});
+
+test("withThumbPaths lists the original and its variants", () => {
+    assert.deepStrictEqual(thumbnails.withThumbPaths("profile_images/u1/a.jpg"), [
+        "profile_images/u1/a.jpg",
+        "thumbs/profile_images/u1/a_128.webp",
+        "thumbs/profile_images/u1/a_400.webp",
+        "thumbs/profile_images/u1/a_1080.webp",
+    ]);
+});
+
+test("awaitingCommit retries newer uploads, within the window", () => {
+    const now = 10 * thumbnails.COMMIT_WINDOW_MS;
+    assert.strictEqual(thumbnails.awaitingCommit(now - 1000, null, now), true);
+    assert.strictEqual(thumbnails.awaitingCommit(now - 1000, now - 5000, now), true);
+    assert.strictEqual(thumbnails.awaitingCommit(now - 5000, now - 1000, now), false);
+    assert.strictEqual(
+        thumbnails.awaitingCommit(now - 2 * thumbnails.COMMIT_WINDOW_MS, null, now), false);
+});
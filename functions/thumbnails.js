@@ -0,0 +1,109 @@
+/**
+ * Naming rules for generated image thumbnails (pure, no Firebase access).
+ *
+ * Originals:   profile_images/{uid}/{file}, user_photos/{uid}/{file}
+ * Thumbnails:  thumbs/{original path without extension}_{size}.webp
+ */
+
+const path = require("path");
+
+/** Longest edge of each generated variant, px. Mirrors ImageVariants.SIZES on the client. */
+const SIZES = [128, 400, 1080];
+
+const THUMBS_PREFIX = "thumbs/";
+
+/**
+ * How long a profile photo may wait for the client to commit its URL before the
+ * function stops retrying (the upload worker can be backed off for a while).
+ */
+const COMMIT_WINDOW_MS = 60 * 60 * 1000;
+
+/**
+ * What an uploaded object is, or null if no thumbnails should be made for it
+ * (thumbnails themselves, non-images, unknown folders).
+ */
+function classify(objectName, contentType) {
+    if (!objectName || objectName.startsWith(THUMBS_PREFIX)) return null;
+    if (!contentType || !contentType.startsWith("image/")) return null;
+
+    const parts = objectName.split("/");
+    if (parts.length !== 3 || !parts[1] || !parts[2]) return null;
+
+    const [folder, uid, file] = parts;
+    if (folder === "profile_images") return {kind: "profile", uid, file};
+    if (folder === "user_photos") return {kind: "photo", uid, file};
+    return null;
+}
+
+function thumbPath(objectName, size) {
+    const parsed = path.posix.parse(objectName);
+    return `${THUMBS_PREFIX}${parsed.dir}/${parsed.name}_${size}.webp`;
+}
+
+/** Database key for a user_photos file (RTDB keys can't contain . # $ [ ] /). */
+function photoKey(file) {
+    return path.posix.parse(file).name.replace(/[.#$[\]/]/g, "_");
+}
+
+/**
+ * RTDB update that publishes {size: url} for an extra photo. Keyed by the file, so it
+ * can never land on another photo. Main photos go through withProfileThumbs instead.
+ */
+function writeBack(info, urls) {
+    return {[`users/${info.uid}/photoThumbs/${photoKey(info.file)}`]: urls};
+}
+
+/** Storage object path a Firebase download URL points at, or null. */
+function objectPathOf(url) {
+    if (typeof url !== "string") return null;
+    const match = /\/o\/([^?#]+)/.exec(url);
+    if (!match) return null;
+    try {
+        return decodeURIComponent(match[1]);
+    } catch (e) {
+        return null;
+    }
+}
+
+/**
+ * Transaction update for users/{uid} or profileCards/{uid}: publishes the main photo's
+ * thumbnails (with a fresh updatedAt for delta sync) only while profileImageUrl still
+ * points at objectName, so a late run for an older upload can't overwrite a newer
+ * photo's. undefined aborts the transaction.
+ */
+function withProfileThumbs(current, objectName, urls, timestamp) {
+    if (current === null) return null; // nothing cached yet; rerun with the server value
+    if (objectPathOf(current.profileImageUrl) !== objectName) return undefined;
+    return Object.assign({}, current, {profileImageThumbs: urls, updatedAt: timestamp});
+}
+
+/**
+ * Whether a main photo whose URL isn't on the profile yet is still waiting for the
+ * client's commit (retry later) rather than superseded by a newer photo (drop it).
+ * currentCreated is when the photo now on the profile was uploaded, null if there is none.
+ */
+function awaitingCommit(objectCreated, currentCreated, now) {
+    if (now - objectCreated > COMMIT_WINDOW_MS) return false;
+    return currentCreated === null || currentCreated < objectCreated;
+}
+
+/**
+ * Main photos under the same profile_images/{uid}/ that a committed photo replaced:
+ * everything uploaded before it. Newer ones may still be waiting for their commit.
+ * objects are {name, created} (ms).
+ */
+function superseded(objects, current) {
+    return objects
+        .filter((o) => o.name !== current.name && o.created < current.created)
+        .map((o) => o.name);
+}
+
+/** An original and every thumbnail generated for it. */
+function withThumbPaths(objectName) {
+    return [objectName, ...SIZES.map((size) => thumbPath(objectName, size))];
+}
+
+module.exports = {
+    SIZES, COMMIT_WINDOW_MS, classify, thumbPath, photoKey, writeBack,
+    objectPathOf, withProfileThumbs, awaitingCommit, superseded, withThumbPaths,
+};